@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.R;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+public class TestDateLabelCache extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private Locale mLocale;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLocale = Locale.getDefault();
+        DateLabelCache.invalidate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Locale.setDefault(mLocale);
+        DateLabelCache.invalidate();
+        super.tearDown();
+    }
+
+    public void testLabels() {
+        long now = System.currentTimeMillis();
+        String today = mContext.getString(R.string.today);
+        String monthDay = new SimpleDateFormat("MMMM dd").format(now);
+
+        assertEquals(today, Utility.getDayName(mContext, now));
+        assertEquals(mContext.getString(R.string.tomorrow), Utility.getDayName(mContext, now + DAY_IN_MILLIS));
+        assertEquals(mContext.getString(R.string.format_full_friendly_date, today, monthDay),
+                Utility.getFriendlyDayString(mContext, now, true));
+        assertEquals(today, Utility.getFriendlyDayString(mContext, now, false));
+        assertEquals(new SimpleDateFormat("EEE MMM dd").format(now + 10 * DAY_IN_MILLIS),
+                Utility.getFriendlyDayString(mContext, now + 10 * DAY_IN_MILLIS, false));
+    }
+
+    public void testLabelsAreMemoized() {
+        long now = System.currentTimeMillis();
+        String label = Utility.getFriendlyDayString(mContext, now + 3 * DAY_IN_MILLIS, false);
+        assertSame("Error: A repeated label should come from the cache",
+                label, Utility.getFriendlyDayString(mContext, now + 3 * DAY_IN_MILLIS, false));
+
+        DateLabelCache.invalidate();
+        String relabeled = Utility.getFriendlyDayString(mContext, now + 3 * DAY_IN_MILLIS, false);
+        assertNotSame("Error: Invalidating should drop the cached labels", label, relabeled);
+        assertEquals(label, relabeled);
+    }
+
+    public void testLocaleChangeRelabels() {
+        long later = System.currentTimeMillis() + 10 * DAY_IN_MILLIS;
+        Locale.setDefault(Locale.US);
+        assertEquals(new SimpleDateFormat("EEE MMM dd", Locale.US).format(later),
+                Utility.getFriendlyDayString(mContext, later, false));
+
+        Locale.setDefault(Locale.FRANCE);
+        assertEquals(new SimpleDateFormat("EEE MMM dd", Locale.FRANCE).format(later),
+                Utility.getFriendlyDayString(mContext, later, false));
+    }
+}
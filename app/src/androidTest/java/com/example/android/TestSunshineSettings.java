@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestSunshineSettings extends AndroidTestCase {
+
+    private SharedPreferences mPrefs;
+    private String mUnitsKey;
+    private String mUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mUnits = mPrefs.getString(mUnitsKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mUnits == null) {
+            mPrefs.edit().remove(mUnitsKey).commit();
+        } else {
+            mPrefs.edit().putString(mUnitsKey, mUnits).commit();
+        }
+        SunshineSettings.invalidate();
+        super.tearDown();
+    }
+
+    public void testSnapshotIsReused() {
+        assertSame("Error: Unchanged settings should be served from the same snapshot",
+                SunshineSettings.get(mContext), SunshineSettings.get(mContext));
+    }
+
+    public void testChangeReplacesSnapshot() {
+        mPrefs.edit().putString(mUnitsKey, mContext.getString(R.string.pref_units_metric)).commit();
+        SunshineSettings.invalidate();
+        assertTrue(SunshineSettings.get(mContext).isMetric());
+
+        // The listener is called on the main thread, after the commit.
+        mPrefs.edit().putString(mUnitsKey, mContext.getString(R.string.pref_units_imperial)).commit();
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return !SunshineSettings.get(mContext).isMetric();
+            }
+        }.run();
+        assertFalse(Utility.isMetric(mContext));
+    }
+
+    // The location status is written on every sync and must not throw the snapshot away.
+    public void testLocationStatusKeepsSnapshot() throws InterruptedException {
+        SunshineSettings settings = SunshineSettings.get(mContext);
+        Utility.resetLocationStatus(mContext);
+        Thread.sleep(200);
+        assertSame(settings, SunshineSettings.get(mContext));
+    }
+}
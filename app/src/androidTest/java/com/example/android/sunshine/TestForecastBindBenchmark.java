@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.MatrixCursor;
+import android.preference.PreferenceManager;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.SunshineSettings;
+import com.example.android.Utility;
+
+import java.util.Locale;
+
+/*
+    Measures how long ForecastAdapter takes to bind a row now that the rows are formatted by the
+    loader, against the bind the adapter used to do, which read the cursor and formatted the date,
+    description, both temperatures and the three accessibility strings on every bind.
+ */
+public class TestForecastBindBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastBindBenchmark.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final int WARMUP_PASSES = 20;
+    private static final int MEASURED_PASSES = 200;
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private String mArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Glide would put image loading in the measurements.
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String artPackKey = mContext.getString(R.string.pref_art_pack_key);
+        mArtPack = prefs.getString(artPackKey, null);
+        prefs.edit().putString(artPackKey, mContext.getString(R.string.pref_art_pack_sunshine)).commit();
+        SunshineSettings.invalidate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String artPackKey = mContext.getString(R.string.pref_art_pack_key);
+        if (mArtPack == null) {
+            prefs.edit().remove(artPackKey).commit();
+        } else {
+            prefs.edit().putString(artPackKey, mArtPack).commit();
+        }
+        SunshineSettings.invalidate();
+        super.tearDown();
+    }
+
+    public void testBindTimePerRow() {
+        Context context = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        RecyclerView recyclerView = new RecyclerView(context);
+        MatrixCursor cursor = createForecastCursor();
+
+        ForecastAdapter adapter = new ForecastAdapter(context, null, new View(context),
+                AbsListView.CHOICE_MODE_NONE);
+        adapter.swapCursor(cursor);
+
+        ForecastAdapter.ForecastAdapterViewHolder[] holders =
+                new ForecastAdapter.ForecastAdapterViewHolder[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            holders[i] = adapter.onCreateViewHolder(recyclerView, adapter.getItemViewType(i));
+        }
+
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            formatAndBind(context, cursor, holders);
+            bind(adapter, holders);
+        }
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+            formatAndBind(context, cursor, holders);
+        }
+        long formatAndBindNanos = (System.nanoTime() - start) / (MEASURED_PASSES * DAYS);
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+            bind(adapter, holders);
+        }
+        long bindNanos = (System.nanoTime() - start) / (MEASURED_PASSES * DAYS);
+
+        Log.d(LOG_TAG, String.format(Locale.US,
+                "Per row: formatting at bind time %d us, precomputed rows %d us",
+                formatAndBindNanos / 1000, bindNanos / 1000));
+        assertTrue("Error: Binding a precomputed row (" + bindNanos +
+                        " ns) should be faster than formatting it at bind time (" + formatAndBindNanos + " ns)",
+                bindNanos < formatAndBindNanos);
+    }
+
+    // What the adapter's bind did before: every row read from the cursor and formatted again.
+    private static void formatAndBind(Context context, MatrixCursor cursor,
+                                      ForecastAdapter.ForecastAdapterViewHolder[] holders) {
+        for (int position = 0; position < holders.length; position++) {
+            ForecastAdapter.ForecastAdapterViewHolder holder = holders[position];
+            cursor.moveToPosition(position);
+            int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            boolean useLongToday = position == 0;
+
+            holder.mIconView.setImageResource(useLongToday
+                    ? Utility.getArtResourceForWeatherCondition(weatherId)
+                    : Utility.getIconResourceForWeatherCondition(weatherId));
+            ViewCompat.setTransitionName(holder.mIconView, "iconView" + position);
+
+            long dateInMillis = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            holder.mDateView.setText(Utility.getFriendlyDayString(context, dateInMillis, useLongToday));
+
+            String description = Utility.getStringForWeatherCondition(context, weatherId);
+            holder.mDescriptionView.setText(description);
+            holder.mDescriptionView.setContentDescription(
+                    context.getString(R.string.a11y_forecast, description));
+
+            String highString = Utility.formatTemperature(context,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+            holder.mHighTempView.setText(highString);
+            holder.mHighTempView.setContentDescription(
+                    context.getString(R.string.a11y_high_temp, highString));
+
+            String lowString = Utility.formatTemperature(context,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+            holder.mLowTempView.setText(lowString);
+            holder.mLowTempView.setContentDescription(
+                    context.getString(R.string.a11y_low_temp, lowString));
+        }
+    }
+
+    private static void bind(ForecastAdapter adapter, ForecastAdapter.ForecastAdapterViewHolder[] holders) {
+        for (int i = 0; i < holders.length; i++) {
+            adapter.onBindViewHolder(holders[i], i);
+        }
+    }
+
+    // Laid out like ForecastFragment.FORECAST_COLUMNS.
+    private static MatrixCursor createForecastCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                "_id", "date", "short_desc", "max", "min", "location_setting", "weather_id",
+                "coord_lat", "coord_long"});
+        long today = System.currentTimeMillis();
+        int[] weatherIds = {200, 300, 500, 511, 520, 600, 701, 761, 781, 800, 801, 802, 803, 804};
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[]{i, today + i * DAY_IN_MILLIS, "Clouds", 20.5 + i, 10.5 - i,
+                    "99705", weatherIds[i], 64.7488, -147.353});
+        }
+        return cursor;
+    }
+}
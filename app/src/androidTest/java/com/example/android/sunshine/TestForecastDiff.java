@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.database.MatrixCursor;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestForecastDiff extends AndroidTestCase {
+
+    private static final String SIGNATURE = "true|sunshine|2457000";
+
+    public void testUnchangedRowsDispatchNothing() {
+        ForecastDiff diff = ForecastDiff.compute(snapshot(SIGNATURE, 1, 2, 3), snapshot(SIGNATURE, 1, 2, 3));
+        assertNotNull(diff);
+        assertTrue("Error: Identical forecasts should have an empty diff", diff.isEmpty());
+        assertEquals(new ArrayList<String>(), dispatch(diff, false));
+    }
+
+    public void testChangedRow() {
+        ForecastDiff.Snapshot from = snapshot(SIGNATURE, 1, 2, 3);
+        ForecastDiff.Snapshot to = ForecastDiff.Snapshot.of(
+                cursor(new long[]{1, 2, 3}, new double[]{20, 25, 20}), 0, SIGNATURE);
+
+        assertEquals(Arrays.asList("change 1+1"), dispatch(ForecastDiff.compute(from, to), false));
+    }
+
+    // At midnight the first day drops off and a new last day arrives.
+    public void testDayRollsOver() {
+        ForecastDiff diff = ForecastDiff.compute(
+                snapshot(SIGNATURE, 1, 2, 3, 4), snapshot(SIGNATURE, 2, 3, 4, 5));
+        assertEquals(Arrays.asList("remove 0+1", "insert 3+1"), dispatch(diff, false));
+
+        // With its own layout for today, the new first row has to be rebound.
+        assertEquals(Arrays.asList("remove 0+1", "insert 3+1", "change 0+1"), dispatch(diff, true));
+    }
+
+    public void testRunsAreCoalesced() {
+        ForecastDiff diff = ForecastDiff.compute(
+                snapshot(SIGNATURE, 1, 2, 3, 6), snapshot(SIGNATURE, 3, 4, 5, 6, 7, 8));
+        assertEquals(Arrays.asList("remove 0+2", "insert 1+2", "insert 4+2"), dispatch(diff, false));
+    }
+
+    public void testDisplayChangeNeedsFullRefresh() {
+        assertNull("Error: Different units should not be diffed",
+                ForecastDiff.compute(snapshot(SIGNATURE, 1, 2), snapshot("false|sunshine|2457000", 1, 2)));
+        assertNull("Error: Nothing to diff against",
+                ForecastDiff.compute(null, snapshot(SIGNATURE, 1, 2)));
+        assertNull("Error: Unsorted rows should not be diffed",
+                ForecastDiff.compute(snapshot(SIGNATURE, 1, 2), snapshot(SIGNATURE, 2, 1)));
+    }
+
+    private static ForecastDiff.Snapshot snapshot(String signature, long... dates) {
+        return ForecastDiff.Snapshot.of(cursor(dates), 0, signature);
+    }
+
+    private static MatrixCursor cursor(long... dates) {
+        double[] highs = new double[dates.length];
+        Arrays.fill(highs, 20);
+        return cursor(dates, highs);
+    }
+
+    private static MatrixCursor cursor(long[] dates, double[] highs) {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"date", "max"});
+        for (int i = 0; i < dates.length; i++) {
+            cursor.addRow(new Object[]{dates[i], highs[i]});
+        }
+        return cursor;
+    }
+
+    private static List<String> dispatch(ForecastDiff diff, boolean firstRowHasOwnLayout) {
+        RecordingAdapter adapter = new RecordingAdapter();
+        diff.dispatchTo(adapter, firstRowHasOwnLayout);
+        return adapter.mEvents;
+    }
+
+    // Records the notifications instead of binding anything.
+    private static class RecordingAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        final List<String> mEvents = new ArrayList<String>();
+
+        RecordingAdapter() {
+            registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    mEvents.add("change " + positionStart + "+" + itemCount);
+                }
+
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    mEvents.add("insert " + positionStart + "+" + itemCount);
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    mEvents.add("remove " + positionStart + "+" + itemCount);
+                }
+            });
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.utils;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A tiny HTTP/1.1 server bound to the loopback interface, used as a stand-in for remote services
+ * in tests.  Each connection carries exactly one request, which is recorded and answered by the
+ * {@link Dispatcher}.  Connections are served concurrently, so the dispatcher may be called from
+ * several threads at once.
+ */
+public class LocalHttpServer {
+    private static final String LOG_TAG = LocalHttpServer.class.getSimpleName();
+
+    public static class Request {
+        public final String method;
+        public final String path;
+        // Header names are lower-cased.
+        public final Map<String, String> headers;
+
+        Request(String method, String path, Map<String, String> headers) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+    }
+
+    public static class Response {
+        final int code;
+        final String reason;
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        byte[] body = new byte[0];
+
+        public Response(int code, String reason) {
+            this.code = code;
+            this.reason = reason;
+        }
+
+        public Response setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Response setBody(byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        public Response setBody(String body) {
+            try {
+                return setBody(body.getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    public interface Dispatcher {
+        Response dispatch(Request request);
+    }
+
+    private final Dispatcher mDispatcher;
+    private final List<Request> mRequests = Collections.synchronizedList(new ArrayList<Request>());
+    private ServerSocket mServerSocket;
+    private Thread mThread;
+
+    public LocalHttpServer(Dispatcher dispatcher) {
+        mDispatcher = dispatcher;
+    }
+
+    public void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, LOG_TAG);
+        mThread.start();
+    }
+
+    public void shutdown() throws IOException, InterruptedException {
+        mServerSocket.close();
+        mThread.join();
+    }
+
+    /**
+     * @return a URI on this server for the given path, which should start with a slash.
+     */
+    public Uri getUri(String path) {
+        return Uri.parse("http://127.0.0.1:" + mServerSocket.getLocalPort() + path);
+    }
+
+    /**
+     * @return a copy of the requests received so far, in order.
+     */
+    public List<Request> getRequests() {
+        synchronized (mRequests) {
+            return new ArrayList<Request>(mRequests);
+        }
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (SocketException e) {
+                // The server socket was closed.
+                return;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error accepting connection", e);
+                return;
+            }
+
+            // Each connection is served on its own thread, so a dispatcher that stalls one
+            // request doesn't hold up the others.
+            final Socket connection = socket;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(connection);
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Error serving request", e);
+                    } finally {
+                        try {
+                            connection.close();
+                        } catch (IOException e) {
+                            Log.e(LOG_TAG, "Error closing socket", e);
+                        }
+                    }
+                }
+            }, LOG_TAG + "-connection").start();
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        String[] parts = requestLine.split(" ");
+
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = in.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        Request request = new Request(parts[0], parts.length > 1 ? parts[1] : "/", headers);
+        mRequests.add(request);
+        Response response = mDispatcher.dispatch(request);
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.code).append(' ').append(response.reason)
+                .append("\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        head.append("Connection: close\r\n\r\n");
+
+        OutputStream out = socket.getOutputStream();
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        out.write(response.body);
+        out.flush();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.art;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.LocalHttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+public class TestArtCache extends AndroidTestCase {
+
+    private static final int THUNDERSTORM_WEATHER_ID = 200;
+    private static final int TORNADO_WEATHER_ID = 781;
+
+    private LocalHttpServer mServer;
+    private File mDirectory;
+    private ArtCache mCache;
+    private String mArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final byte[] png = createPng(300, 200);
+        mServer = new LocalHttpServer(new LocalHttpServer.Dispatcher() {
+            @Override
+            public LocalHttpServer.Response dispatch(LocalHttpServer.Request request) {
+                return new LocalHttpServer.Response(HttpURLConnection.HTTP_OK, "OK").setBody(png);
+            }
+        });
+        mServer.start();
+        mArtPack = mServer.getUri("/art_%s.png").toString();
+
+        mDirectory = new File(mContext.getCacheDir(), "test_art");
+        deleteDirectory(mDirectory);
+        mCache = new ArtCache(mDirectory, 4 * 1024 * 1024);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteDirectory(mDirectory);
+        super.tearDown();
+    }
+
+    public void testSizeBuckets() {
+        assertEquals(64, ArtCache.getSizeBucket(10, 64));
+        assertEquals(128, ArtCache.getSizeBucket(65, 20));
+        assertEquals(256, ArtCache.getSizeBucket(192, 192));
+        assertEquals(512, ArtCache.getSizeBucket(2000, 1000));
+    }
+
+    public void testGetNeverDownloads() {
+        assertNull(mCache.get(mArtPack, THUNDERSTORM_WEATHER_ID, 100, 100));
+        assertEquals(0, mServer.getRequests().size());
+    }
+
+    public void testLoadDownloadsOncePerImage() throws IOException {
+        Bitmap art = mCache.load(mArtPack, THUNDERSTORM_WEATHER_ID, 100, 90);
+        assertNotNull(art);
+        assertEquals("The art should fit the size bucket",
+                128, Math.max(art.getWidth(), art.getHeight()));
+
+        // Another size of the same image, and another weather id that shares it, are decoded from
+        // the file already on disk.
+        Bitmap large = mCache.load(mArtPack, THUNDERSTORM_WEATHER_ID, 256, 256);
+        assertEquals(256, Math.max(large.getWidth(), large.getHeight()));
+        assertNotNull(mCache.get(mArtPack, TORNADO_WEATHER_ID, 100, 90));
+        assertEquals(1, mServer.getRequests().size());
+    }
+
+    private static byte[] createPng(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.art;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.LocalHttpServer;
+import com.example.android.sunshine.common.WeatherConditionTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.HttpURLConnection;
+
+public class TestArtPackPrefetcher extends AndroidTestCase {
+
+    private static final int[] SIZES = {40, 96};
+    private static final int FOG_WEATHER_ID = 741;
+
+    private LocalHttpServer mServer;
+    private File mDirectory;
+    private ArtCache mCache;
+    private String mArtPack;
+    private String mOtherArtPack;
+    // The picture the server fails to serve, if any.
+    private volatile String mMissingSlug;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final byte[] png = createPng(200, 200);
+        mServer = new LocalHttpServer(new LocalHttpServer.Dispatcher() {
+            @Override
+            public LocalHttpServer.Response dispatch(LocalHttpServer.Request request) {
+                if (mMissingSlug != null && request.path.endsWith("art_" + mMissingSlug + ".png")) {
+                    return new LocalHttpServer.Response(HttpURLConnection.HTTP_NOT_FOUND, "Not Found");
+                }
+                return new LocalHttpServer.Response(HttpURLConnection.HTTP_OK, "OK").setBody(png);
+            }
+        });
+        mServer.start();
+        mArtPack = mServer.getUri("/sunshine/art_%s.png").toString();
+        mOtherArtPack = mServer.getUri("/dogs/art_%s.png").toString();
+
+        mDirectory = new File(mContext.getCacheDir(), "test_art_prefetch");
+        deleteDirectory(mDirectory);
+        mCache = new ArtCache(mDirectory, 4 * 1024 * 1024);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        deleteDirectory(mDirectory);
+        super.tearDown();
+    }
+
+    public void testPrefetchPinsWholePack() {
+        int total = WeatherConditionTable.getArtSlugs().size();
+        assertEquals(0, mCache.getCoverage(mArtPack, SIZES).getDownloaded());
+
+        ArtCache.Coverage coverage = ArtPackPrefetcher.prefetch(mCache, mArtPack, SIZES);
+        assertTrue(coverage.toString(), coverage.isComplete());
+        assertEquals(total, coverage.getTotal());
+        assertEquals("Every picture should be fetched once", total, mServer.getRequests().size());
+
+        // Pinned art is available without touching the disk.
+        for (int size : SIZES) {
+            Bitmap art = mCache.peek(mArtPack, FOG_WEATHER_ID, size, size);
+            assertNotNull("Fog art should be pinned at " + size, art);
+        }
+
+        // A pack that's already on the device isn't fetched again.
+        assertTrue(ArtPackPrefetcher.prefetch(mCache, mArtPack, SIZES).isComplete());
+        assertEquals(total, mServer.getRequests().size());
+    }
+
+    public void testFailedDownloadIsRetried() {
+        mMissingSlug = WeatherConditionTable.getArtSlug(FOG_WEATHER_ID);
+        ArtCache.Coverage coverage = ArtPackPrefetcher.prefetch(mCache, mArtPack, SIZES);
+        assertFalse(coverage.isComplete());
+        assertEquals(coverage.getTotal() - 1, coverage.getDownloaded());
+        assertEquals(coverage.getTotal() - 1, coverage.getPinned());
+        assertNull(mCache.peek(mArtPack, FOG_WEATHER_ID, SIZES[0], SIZES[0]));
+
+        mMissingSlug = null;
+        int requests = mServer.getRequests().size();
+        assertTrue(ArtPackPrefetcher.prefetch(mCache, mArtPack, SIZES).isComplete());
+        assertEquals("Only the missing picture should be fetched",
+                requests + 1, mServer.getRequests().size());
+    }
+
+    public void testPackChangeDropsOldPack() {
+        ArtPackPrefetcher.prefetch(mCache, mArtPack, SIZES);
+        ArtCache.Coverage coverage = ArtPackPrefetcher.prefetch(mCache, mOtherArtPack, SIZES);
+        assertTrue(coverage.toString(), coverage.isComplete());
+
+        ArtCache.Coverage oldCoverage = mCache.getCoverage(mArtPack, SIZES);
+        assertEquals(0, oldCoverage.getDownloaded());
+        assertEquals(0, oldCoverage.getPinned());
+        assertNull(mCache.peek(mArtPack, FOG_WEATHER_ID, SIZES[0], SIZES[0]));
+    }
+
+    private static byte[] createPng(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+}
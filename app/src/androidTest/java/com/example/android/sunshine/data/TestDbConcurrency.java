@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    Measures how long forecast reads take while the sync adapter's bulk insert is running.  With
+    write-ahead logging the readers should keep completing during the insert instead of waiting
+    for its transaction to commit.
+ */
+public class TestDbConcurrency extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDbConcurrency.class.getSimpleName();
+
+    private static final int BULK_INSERT_ROWS = 3000;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        super.tearDown();
+    }
+
+    public void testWriteAheadLoggingEnabled() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getReadableDatabase();
+        Cursor cursor = db.rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: The weather database should use write-ahead logging",
+                "wal", cursor.getString(0).toLowerCase(Locale.US));
+        cursor.close();
+        db.close();
+    }
+
+    public void testReadLatencyDuringBulkInsert() throws InterruptedException {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        // The weather/[location] queries are answered from the provider's query cache until the
+        // insert commits, so the readers select on the weather table directly to hit SQLite.
+        String selection = WeatherEntry.COLUMN_LOC_KEY + " = ?";
+        String[] selectionArgs = new String[]{Long.toString(locationRowId)};
+
+        // Seed the rows the readers will be looking at.
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createWeatherValues(locationRowId, TestUtilities.TEST_DATE, 14));
+
+        final ContentValues[] bulkValues = createWeatherValues(locationRowId,
+                TestUtilities.TEST_DATE + 14 * DAY_IN_MILLIS, BULK_INSERT_ROWS);
+        final long[] insertTime = new long[2];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                insertTime[0] = SystemClock.elapsedRealtime();
+                mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkValues);
+                insertTime[1] = SystemClock.elapsedRealtime();
+            }
+        }, "BulkInsertWriter");
+
+        List<Long> latencies = new ArrayList<Long>();
+        writer.start();
+        while (writer.isAlive()) {
+            long start = SystemClock.elapsedRealtime();
+            Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI, null,
+                    selection, selectionArgs, WeatherEntry.COLUMN_DATE + " ASC");
+            assertNotNull(cursor);
+            cursor.moveToFirst();
+            cursor.close();
+            long end = SystemClock.elapsedRealtime();
+            if (writer.isAlive()) {
+                latencies.add(end - start);
+            }
+        }
+        writer.join();
+
+        long insertMillis = insertTime[1] - insertTime[0];
+        assertFalse("Error: No reads completed while the bulk insert was running",
+                latencies.isEmpty());
+
+        Collections.sort(latencies);
+        long median = latencies.get(latencies.size() / 2);
+        long p95 = latencies.get((latencies.size() * 95) / 100);
+        long max = latencies.get(latencies.size() - 1);
+        Log.i(LOG_TAG, "Bulk insert of " + BULK_INSERT_ROWS + " rows took " + insertMillis
+                + " ms; " + latencies.size() + " reads completed meanwhile (median " + median
+                + " ms, p95 " + p95 + " ms, max " + max + " ms)");
+
+        // A reader that had to wait for the insert to commit would take about as long as the
+        // insert itself.
+        assertTrue("Error: Readers were blocked by the bulk insert (median " + median + " ms of "
+                + insertMillis + " ms)", latencies.size() > 1 && median < insertMillis);
+    }
+
+    private static ContentValues[] createWeatherValues(long locationRowId, long startDate, int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, startDate + i * DAY_IN_MILLIS);
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, 1.1);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, 1.2 + 0.01 * i);
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, 1.3 - 0.01 * i);
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, 75 + i % 10);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, 65 - i % 10);
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, 5.5 + i % 5);
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, 321);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Builds a database with the schema of each older version, fills it with a forecast, and checks
+    that WeatherDbHelper upgrades it to the current schema without losing the data.  Add a
+    schema and a test here for every new DATABASE_VERSION.
+ */
+public class TestDbMigrations extends AndroidTestCase {
+
+    // The schema as it shipped in version 2.
+    private static final String V2_CREATE_LOCATION_TABLE = "CREATE TABLE location (" +
+            "_id INTEGER PRIMARY KEY," +
+            "location_setting TEXT UNIQUE NOT NULL, " +
+            "city_name TEXT NOT NULL, " +
+            "coord_lat REAL NOT NULL, " +
+            "coord_long REAL NOT NULL  );";
+
+    private static final String V2_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, " +
+            "short_desc TEXT NOT NULL, " +
+            "weather_id INTEGER NOT NULL," +
+            "min REAL NOT NULL, " +
+            "max REAL NOT NULL, " +
+            "humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, " +
+            "wind REAL NOT NULL, " +
+            "degrees REAL NOT NULL, " +
+            " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+            "UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    // Version 3 added the content hash.
+    private static final String V3_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, " +
+            "short_desc TEXT NOT NULL, " +
+            "weather_id INTEGER NOT NULL," +
+            "min REAL NOT NULL, " +
+            "max REAL NOT NULL, " +
+            "humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, " +
+            "wind REAL NOT NULL, " +
+            "degrees REAL NOT NULL, " +
+            "row_hash INTEGER NOT NULL DEFAULT 0, " +
+            " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+            "UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testUpgradeFromVersion2() {
+        createOldDatabase(2, V2_CREATE_LOCATION_TABLE, V2_CREATE_WEATHER_TABLE);
+        assertUpgradeKeepsData();
+    }
+
+    public void testUpgradeFromVersion3() {
+        createOldDatabase(3, V2_CREATE_LOCATION_TABLE, V3_CREATE_WEATHER_TABLE);
+        assertUpgradeKeepsData();
+    }
+
+    // Anything older than the oldest known schema is simply rebuilt.
+    public void testUpgradeFromUnknownVersionRecreates() {
+        createOldDatabase(1, V2_CREATE_LOCATION_TABLE, V2_CREATE_WEATHER_TABLE);
+
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals("Error: An unmigratable database should be emptied", 0, cursor.getCount());
+        cursor.close();
+        db.close();
+    }
+
+    private void createOldDatabase(int version, String createLocationTable, String createWeatherTable) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(WeatherDbHelper.DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        db.execSQL(createLocationTable);
+        db.execSQL(createWeatherTable);
+
+        long locationRowId = db.insert(LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        assertTrue("Error: Failure to insert North Pole Location Values", locationRowId != -1);
+        long weatherRowId = db.insert(WeatherEntry.TABLE_NAME, null,
+                TestUtilities.createWeatherValues(locationRowId));
+        assertTrue("Error: Failure to insert Weather Values", weatherRowId != -1);
+
+        db.setVersion(version);
+        db.close();
+    }
+
+    private void assertUpgradeKeepsData() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+
+        Cursor locationCursor = db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null);
+        TestUtilities.validateCursor("Error: Location lost during upgrade",
+                locationCursor, TestUtilities.createNorthPoleLocationValues());
+
+        Cursor weatherCursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertTrue("Error: Weather lost during upgrade", weatherCursor.moveToFirst());
+        long locationRowId = weatherCursor.getLong(weatherCursor.getColumnIndex(WeatherEntry.COLUMN_LOC_KEY));
+        TestUtilities.validateCurrentRecord("Error: Weather changed during upgrade",
+                weatherCursor, TestUtilities.createWeatherValues(locationRowId));
+        weatherCursor.close();
+
+        List<String> upgradedSchema = describeSchema(db);
+        db.close();
+
+        // The upgraded database must look exactly like a fresh one.
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        db = new WeatherDbHelper(mContext).getWritableDatabase();
+        List<String> freshSchema = describeSchema(db);
+        db.close();
+
+        assertEquals("Error: The upgraded schema differs from a freshly created one",
+                freshSchema, upgradedSchema);
+    }
+
+    // Lists every column (name, type, not null, default) and every index of both tables.
+    private static List<String> describeSchema(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<String>();
+        for (String table : new String[]{LocationEntry.TABLE_NAME, WeatherEntry.TABLE_NAME}) {
+            Cursor columns = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+            while (columns.moveToNext()) {
+                schema.add(table + "." + columns.getString(columns.getColumnIndex("name")) +
+                        " " + columns.getString(columns.getColumnIndex("type")) +
+                        " notnull=" + columns.getInt(columns.getColumnIndex("notnull")) +
+                        " default=" + columns.getString(columns.getColumnIndex("dflt_value")));
+            }
+            columns.close();
+
+            Cursor indexes = db.rawQuery("PRAGMA index_list(" + table + ")", null);
+            while (indexes.moveToNext()) {
+                String index = indexes.getString(indexes.getColumnIndex("name"));
+                StringBuilder description = new StringBuilder(table + " index " + index + " (");
+                Cursor indexColumns = db.rawQuery("PRAGMA index_info(" + index + ")", null);
+                while (indexColumns.moveToNext()) {
+                    description.append(indexColumns.getString(indexColumns.getColumnIndex("name")))
+                            .append(' ');
+                }
+                indexColumns.close();
+                schema.add(description.append(')').toString());
+            }
+            indexes.close();
+        }
+        Collections.sort(schema);
+        return schema;
+    }
+}
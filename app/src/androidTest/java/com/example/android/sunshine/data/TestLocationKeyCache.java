@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+public class TestLocationKeyCache extends AndroidTestCase {
+
+    private LocationKeyCache mLocationKeys;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        mLocationKeys = LocationKeyCache.getInstance(mContext);
+        mLocationKeys.clear();
+    }
+
+    public void testInsertRemembersId() {
+        long locationRowId = insertLocation();
+
+        assertEquals("Error: The inserted location should be cached",
+                locationRowId, mLocationKeys.getId(TestUtilities.TEST_LOCATION));
+        assertEquals("Error: The reverse lookup should be cached",
+                TestUtilities.TEST_LOCATION, mLocationKeys.getLocationSetting(locationRowId));
+    }
+
+    public void testLocationChangesClear() {
+        insertLocation();
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        assertEquals("Error: Deleting locations should clear the cache",
+                LocationKeyCache.NO_ID, mLocationKeys.getId(TestUtilities.TEST_LOCATION));
+
+        insertLocation();
+        ContentValues updateValues = new ContentValues();
+        updateValues.put(LocationEntry.COLUMN_CITY_NAME, "Santa's Village");
+        mContext.getContentResolver().update(LocationEntry.CONTENT_URI, updateValues, null, null);
+        assertEquals("Error: Updating locations should clear the cache",
+                LocationKeyCache.NO_ID, mLocationKeys.getId(TestUtilities.TEST_LOCATION));
+    }
+
+    // A location the cache hasn't seen is looked up once, then the query filters on its id.
+    public void testQueryFillsCache() {
+        long locationRowId = insertLocation();
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+        mLocationKeys.clear();
+
+        Uri locationUri = WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        Cursor cursor = mContext.getContentResolver().query(locationUri, null, null, null, null);
+        TestUtilities.validateCursor("Error: Query by location setting", cursor, weatherValues);
+
+        assertEquals("Error: The query should have cached the location id",
+                locationRowId, mLocationKeys.getId(TestUtilities.TEST_LOCATION));
+    }
+
+    private long insertLocation() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        return Long.parseLong(locationUri.getLastPathSegment());
+    }
+}
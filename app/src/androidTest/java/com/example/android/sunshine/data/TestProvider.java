@@ -24,6 +24,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
@@ -512,4 +513,108 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // Storing the same forecast twice should write nothing the second time, and a single changed
+    // day should be the only row written and reported.
+    public void testUpsertWritesOnlyChangedRows() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+
+        int insertCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(locationRowId));
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        int unchangedCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(locationRowId));
+        assertEquals("Error: An identical forecast should not be written again", 0, unchangedCount);
+
+        try {
+            // Give a stray notification time to arrive before checking that none did.
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            fail("Interrupted while waiting for notifications");
+        }
+        assertFalse("Error: An identical forecast should not notify", weatherObserver.mContentChanged);
+
+        ContentValues[] changedValues = createBulkInsertWeatherValues(locationRowId);
+        changedValues[3].put(WeatherEntry.COLUMN_MAX_TEMP, 99.5);
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArray(WeatherContract.EXTRA_WEATHER_VALUES, changedValues);
+        Bundle result = mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_UPSERT_WEATHER, null, extras);
+
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        long[] changedDates = result.getLongArray(WeatherContract.EXTRA_CHANGED_DATES);
+        assertEquals("Error: Only the changed day should be written", 1, changedDates.length);
+        assertEquals(changedValues[3].getAsLong(WeatherEntry.COLUMN_DATE).longValue(), changedDates[0]);
+        assertEquals(locationRowId,
+                result.getLongArray(WeatherContract.EXTRA_CHANGED_LOCATION_IDS)[0]);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToPosition(3);
+        TestUtilities.validateCurrentRecord("testUpsertWritesOnlyChangedRows.  Error validating changed row",
+                cursor, changedValues[3]);
+        cursor.close();
+    }
+
+    // A new location, weather rows naming it by its setting and the purge of the older days are
+    // all stored by one call.
+    public void testUpsertAddsLocationsAndPurges() {
+        ContentValues[] weatherValues = createBulkInsertWeatherValues(0);
+        for (ContentValues values : weatherValues) {
+            values.remove(WeatherEntry.COLUMN_LOC_KEY);
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, TestUtilities.TEST_LOCATION);
+        }
+        long purgeDate = weatherValues[1].getAsLong(WeatherEntry.COLUMN_DATE);
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArray(WeatherContract.EXTRA_LOCATION_VALUES,
+                new ContentValues[]{TestUtilities.createNorthPoleLocationValues()});
+        extras.putParcelableArray(WeatherContract.EXTRA_WEATHER_VALUES, weatherValues);
+        extras.putLong(WeatherContract.EXTRA_PURGE_DATE, purgeDate);
+        Bundle result = mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_UPSERT_WEATHER, null, extras);
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT,
+                result.getLongArray(WeatherContract.EXTRA_CHANGED_DATES).length);
+        assertEquals("Error: The first two days should have been purged",
+                2, result.getInt(WeatherContract.EXTRA_DELETED_COUNT));
+
+        Cursor locationCursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                new String[]{LocationEntry._ID}, LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{TestUtilities.TEST_LOCATION}, null);
+        assertTrue("Error: The location should have been added", locationCursor.moveToFirst());
+        long locationRowId = locationCursor.getLong(0);
+        locationCursor.close();
+
+        Cursor weatherCursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION),
+                new String[]{WeatherEntry.COLUMN_DATE, WeatherEntry.COLUMN_LOC_KEY},
+                null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 2, weatherCursor.getCount());
+        weatherCursor.moveToFirst();
+        assertTrue(weatherCursor.getLong(0) > purgeDate);
+        assertEquals(locationRowId, weatherCursor.getLong(1));
+        weatherCursor.close();
+
+        // Storing it again finds the location instead of adding it a second time.
+        mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_UPSERT_WEATHER, null, extras);
+        locationCursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals(1, locationCursor.getCount());
+        locationCursor.close();
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+    Runs EXPLAIN QUERY PLAN over the statements WeatherProvider issues for each of its URI
+    patterns and fails if any of them falls back to scanning the weather or location table.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    // "SCAN TABLE weather" on older SQLite versions, "SCAN weather" on newer ones.  A scan of a
+    // covering index is still a scan of every row, so it fails too.
+    private static final Pattern TABLE_SCAN = Pattern.compile(
+            "^SCAN (TABLE )?(" + WeatherEntry.TABLE_NAME + "|" + LocationEntry.TABLE_NAME + ")\\b");
+
+    // The columns the list, widgets and watch ask for.
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    private static final String SORT_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private SQLiteDatabase mDb;
+    private final Set<Integer> mCoveredMatches = new HashSet<Integer>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mDb = new WeatherDbHelper(mContext).getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    public void testNoTableScans() {
+        String location = TestUtilities.TEST_LOCATION;
+        String date = Long.toString(TestUtilities.TEST_DATE);
+
+        // "weather/*"
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationSettingSelection, null, null, SORT_ORDER, null),
+                location);
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationSettingWithStartDateSelection, null, null, SORT_ORDER, null),
+                location, date);
+
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationIdSelection, null, null, SORT_ORDER, null),
+                "1");
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationIdWithStartDateSelection, null, null, SORT_ORDER, null),
+                "1", date);
+
+        // "weather/*/#"
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(null,
+                        WeatherProvider.sLocationSettingAndDaySelection, null, null, null, null),
+                location, date);
+        assertNoTableScan(WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE,
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(null,
+                        WeatherProvider.sLocationIdAndDaySelection, null, null, null, null),
+                "1", date);
+
+        // "weather", as used by the upsert and by the sync adapter's purge of old days.
+        assertNoTableScan(WeatherProvider.WEATHER,
+                "SELECT " + WeatherEntry.COLUMN_HASH + " FROM " + WeatherEntry.TABLE_NAME +
+                        " WHERE " + WeatherProvider.sLocationIdAndDaySelection,
+                "1", date);
+        assertNoTableScan(WeatherProvider.WEATHER,
+                "DELETE FROM " + WeatherEntry.TABLE_NAME +
+                        " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?",
+                date);
+
+        // "location", as used by the sync adapter to look up a location setting.
+        assertNoTableScan(WeatherProvider.LOCATION,
+                "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME +
+                        " WHERE " + LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                location);
+
+        assertEquals("Error: Every URI pattern should have its queries checked", 4,
+                mCoveredMatches.size());
+    }
+
+    public void testForecastQueryUsesCoveringIndex() {
+        String plan = explain(
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationSettingWithStartDateSelection, null, null, SORT_ORDER, null),
+                TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE));
+        assertTrue("Error: The forecast query should be covered by weather_location_date_idx: " + plan,
+                plan.contains("COVERING INDEX weather_location_date_idx"));
+        assertFalse("Error: The forecast query should not need a sort: " + plan,
+                plan.contains("TEMP B-TREE"));
+    }
+
+    public void testForecastByLocationIdUsesCoveringIndex() {
+        String plan = explain(
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(FORECAST_COLUMNS,
+                        WeatherProvider.sLocationIdWithStartDateSelection, null, null, SORT_ORDER, null),
+                "1", Long.toString(TestUtilities.TEST_DATE));
+        assertTrue("Error: The forecast query by id should be covered by weather_location_date_idx: " + plan,
+                plan.contains("COVERING INDEX weather_location_date_idx"));
+        assertFalse("Error: The forecast query by id should not need a sort: " + plan,
+                plan.contains("TEMP B-TREE"));
+    }
+
+    private void assertNoTableScan(int match, String sql, String... args) {
+        mCoveredMatches.add(match);
+        String plan = explain(sql, args);
+        for (String step : plan.split("\n")) {
+            assertFalse("Error: Full table scan for URI match " + match + ":\n" + sql + "\n" + plan,
+                    TABLE_SCAN.matcher(step).find());
+        }
+    }
+
+    private String explain(String sql, String... args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.d(LOG_TAG, sql + "\n" + plan);
+        return plan.toString();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+public class TestWeatherQueryCache extends AndroidTestCase {
+
+    private ContentProviderClient mClient;
+    private WeatherQueryCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        mClient = mContext.getContentResolver().acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        mCache = ((WeatherProvider) mClient.getLocalContentProvider()).getQueryCache();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mClient.release();
+        super.tearDown();
+    }
+
+    public void testRepeatedQueryIsServedFromCache() {
+        long locationRowId = insertLocation();
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        Uri todayUri = WeatherEntry.buildWeatherLocationWithDate(
+                TestUtilities.TEST_LOCATION, TestUtilities.TEST_DATE);
+
+        long hits = mCache.getHitCount();
+        long misses = mCache.getMissCount();
+
+        TestUtilities.validateCursor("Error: First query", query(todayUri), weatherValues);
+        assertEquals("Error: The first query should miss", misses + 1, mCache.getMissCount());
+
+        TestUtilities.validateCursor("Error: Cached query", query(todayUri), weatherValues);
+        assertEquals("Error: The second query should hit", hits + 1, mCache.getHitCount());
+        assertEquals(misses + 1, mCache.getMissCount());
+    }
+
+    public void testWritesInvalidate() {
+        long locationRowId = insertLocation();
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        Uri todayUri = WeatherEntry.buildWeatherLocationWithDate(
+                TestUtilities.TEST_LOCATION, TestUtilities.TEST_DATE);
+        query(todayUri).close();
+
+        // bulkInsert of a changed row
+        ContentValues changedValues = TestUtilities.createWeatherValues(locationRowId);
+        changedValues.put(WeatherEntry.COLUMN_MAX_TEMP, 80);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, new ContentValues[]{changedValues});
+
+        long misses = mCache.getMissCount();
+        TestUtilities.validateCursor("Error: Query after bulkInsert", query(todayUri), changedValues);
+        assertEquals("Error: bulkInsert should invalidate", misses + 1, mCache.getMissCount());
+
+        // update
+        ContentValues updateValues = new ContentValues();
+        updateValues.put(WeatherEntry.COLUMN_MIN_TEMP, 10);
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, updateValues, null, null);
+
+        misses = mCache.getMissCount();
+        Cursor cursor = query(todayUri);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(10.0, cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_MIN_TEMP)));
+        cursor.close();
+        assertEquals("Error: update should invalidate", misses + 1, mCache.getMissCount());
+
+        // delete
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+
+        misses = mCache.getMissCount();
+        cursor = query(todayUri);
+        assertEquals("Error: Query after delete should be empty", 0, cursor.getCount());
+        cursor.close();
+        assertEquals("Error: delete should invalidate", misses + 1, mCache.getMissCount());
+    }
+
+    // An empty result for a location that doesn't exist yet must not outlive the location's insert.
+    public void testLocationInsertInvalidatesEmptyResult() {
+        Uri locationUri = WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        Cursor cursor = query(locationUri);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+
+        long locationRowId = insertLocation();
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+
+        TestUtilities.validateCursor("Error: Query after inserts", query(locationUri), weatherValues);
+    }
+
+    private long insertLocation() {
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        return Long.parseLong(locationUri.getLastPathSegment());
+    }
+
+    private Cursor query(Uri uri) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        assertNotNull(cursor);
+        return cursor;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.LocalHttpServer;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+
+public class TestForecastResponseCache extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+    private static final String TEST_ETAG = "\"forecast-v1\"";
+    private static final String TEST_BODY = "{\"cod\":\"200\"}";
+
+    private LocalHttpServer mServer;
+    private ForecastResponseCache mCache;
+    private Uri mForecastUri;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        // Anything but a matching conditional request is answered with a server error, so a
+        // request that bypasses the cache never gets as far as storing anything.
+        mServer = new LocalHttpServer(new LocalHttpServer.Dispatcher() {
+            @Override
+            public LocalHttpServer.Response dispatch(LocalHttpServer.Request request) {
+                if (TEST_ETAG.equals(request.getHeader(ForecastResponseCache.HEADER_IF_NONE_MATCH))) {
+                    return new LocalHttpServer.Response(HttpURLConnection.HTTP_NOT_MODIFIED, "Not Modified")
+                            .setHeader(ForecastResponseCache.HEADER_ETAG, TEST_ETAG);
+                }
+                return new LocalHttpServer.Response(HttpURLConnection.HTTP_INTERNAL_ERROR, "Server Error");
+            }
+        });
+        mServer.start();
+        mForecastUri = mServer.getUri("/data/2.5/forecast/daily?q=" + TEST_LOCATION);
+
+        mCache = ForecastResponseCache.open(mContext);
+        mCache.remove(mForecastUri.toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        mCache.remove(mForecastUri.toString());
+        super.tearDown();
+    }
+
+    public void testEntryIsOnlyVisibleOnceCommitted() throws IOException {
+        String url = mForecastUri.toString();
+        ForecastResponseCache.Entry entry = mCache.write(url, TEST_ETAG, null,
+                new ByteArrayInputStream(TEST_BODY.getBytes("UTF-8")));
+        assertNotNull("Error: A response with an ETag should be cached", entry);
+        assertNull("Error: An uncommitted entry should not be returned", mCache.get(url));
+
+        mCache.commit(entry);
+        ForecastResponseCache.Entry cached = mCache.get(url);
+        assertNotNull("Error: A committed entry should be returned", cached);
+        assertEquals(TEST_ETAG, cached.etag);
+        assertNull(cached.lastModified);
+
+        assertNull("Error: A response without validators should not be cached",
+                mCache.write(url, null, null, new ByteArrayInputStream(new byte[0])));
+    }
+
+    /*
+        A 304 answer to the conditional request must leave the provider alone: no inserts, no
+        deletes and therefore no change notifications, as long as there are no past days to purge.
+     */
+    public void testNotModifiedMakesNoProviderWrites() throws Exception {
+        long locationId = insertLocation();
+        insertTodaysWeather(locationId);
+
+        String url = mForecastUri.toString();
+        mCache.commit(mCache.write(url, TEST_ETAG, null,
+                new ByteArrayInputStream(TEST_BODY.getBytes("UTF-8"))));
+
+        HandlerThread observerThread = new HandlerThread("ContentObserverThread");
+        observerThread.start();
+        final boolean[] changed = new boolean[1];
+        ContentObserver observer = new ContentObserver(new Handler(observerThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changed[0] = true;
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, observer);
+        mContext.getContentResolver().registerContentObserver(LocationEntry.CONTENT_URI, true, observer);
+
+        try {
+            new SunshineSyncAdapter(mContext, false).fetchForecast(mForecastUri, TEST_LOCATION);
+
+            List<LocalHttpServer.Request> requests = mServer.getRequests();
+            assertEquals("Error: Expected a single request", 1, requests.size());
+            assertEquals("Error: The request should have been conditional",
+                    TEST_ETAG, requests.get(0).getHeader(ForecastResponseCache.HEADER_IF_NONE_MATCH));
+
+            // Give any stray notification time to arrive before checking that none did.
+            Thread.sleep(1000);
+            assertFalse("Error: A not modified response should not write to the provider", changed[0]);
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(observer);
+            observerThread.quit();
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: The stored forecast should be untouched", 1, cursor.getCount());
+        cursor.close();
+    }
+
+    /*
+        A 304 answer still purges the days before yesterday, so the stored forecast rolls over
+        while the server keeps reporting it unchanged.
+     */
+    public void testNotModifiedPurgesOldDays() throws Exception {
+        long locationId = insertLocation();
+        insertTodaysWeather(locationId);
+        insertWeather(locationId, System.currentTimeMillis() - 3 * 24 * 60 * 60 * 1000L);
+
+        String url = mForecastUri.toString();
+        mCache.commit(mCache.write(url, TEST_ETAG, null,
+                new ByteArrayInputStream(TEST_BODY.getBytes("UTF-8"))));
+
+        new SunshineSyncAdapter(mContext, false).fetchForecast(mForecastUri, TEST_LOCATION);
+
+        assertEquals("Error: The request should have been conditional", TEST_ETAG,
+                mServer.getRequests().get(0).getHeader(ForecastResponseCache.HEADER_IF_NONE_MATCH));
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: Only today's forecast should be left", 1, cursor.getCount());
+        cursor.close();
+    }
+
+    private long insertLocation() {
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_SETTING, TEST_LOCATION);
+        values.put(LocationEntry.COLUMN_CITY_NAME, "North Pole");
+        values.put(LocationEntry.COLUMN_COORD_LAT, 64.7488);
+        values.put(LocationEntry.COLUMN_COORD_LONG, -147.353);
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values);
+        return ContentUris.parseId(locationUri);
+    }
+
+    private void insertTodaysWeather(long locationId) {
+        insertWeather(locationId, System.currentTimeMillis());
+    }
+
+    private void insertWeather(long locationId, long date) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+        values.put(WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherEntry.COLUMN_DEGREES, 1.1);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, 1.2);
+        values.put(WeatherEntry.COLUMN_PRESSURE, 1.3);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, 75);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, 65);
+        values.put(WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, 5.5);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, 321);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, values);
+    }
+}
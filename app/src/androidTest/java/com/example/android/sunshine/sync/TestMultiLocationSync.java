@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.example.android.Utility;
+import com.example.android.sunshine.app.utils.LocalHttpServer;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestMultiLocationSync extends AndroidTestCase {
+
+    // Locations whose path starts with this prefix are answered after FETCH_DELAY_MILLIS.
+    private static final String SLOW_PREFIX = "slow-";
+    private static final String STALLED_LOCATION = "stalled";
+    private static final long FETCH_DELAY_MILLIS = 1000;
+
+    private LocalHttpServer mServer;
+    private CountDownLatch mReleaseStalled;
+    private ForecastResponseCache mCache;
+    private Map<String, Uri> mRequests;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+
+        mReleaseStalled = new CountDownLatch(1);
+        mServer = new LocalHttpServer(new LocalHttpServer.Dispatcher() {
+            @Override
+            public LocalHttpServer.Response dispatch(LocalHttpServer.Request request) {
+                String location = Uri.parse(request.path).getLastPathSegment();
+                try {
+                    if (STALLED_LOCATION.equals(location)) {
+                        mReleaseStalled.await(30, TimeUnit.SECONDS);
+                    } else if (location.startsWith(SLOW_PREFIX)) {
+                        Thread.sleep(FETCH_DELAY_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new LocalHttpServer.Response(HttpURLConnection.HTTP_OK, "OK")
+                        .setHeader(ForecastResponseCache.HEADER_ETAG, "\"" + location + "\"")
+                        .setBody(forecastJson(location));
+            }
+        });
+        mServer.start();
+        mCache = ForecastResponseCache.open(mContext);
+        mRequests = new LinkedHashMap<String, Uri>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mReleaseStalled.countDown();
+        mServer.shutdown();
+        for (Uri uri : mRequests.values()) {
+            mCache.remove(uri.toString());
+        }
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        super.tearDown();
+    }
+
+    public void testPeriodicSyncsRefreshEveryLocation() {
+        assertTrue("Error: A periodic sync should refresh every location",
+                SunshineSyncAdapter.isAllLocationsSync(new Bundle()));
+
+        Bundle manual = new Bundle();
+        manual.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        assertFalse("Error: A requested sync should only refresh the preferred location",
+                SunshineSyncAdapter.isAllLocationsSync(manual));
+
+        manual.putBoolean(SunshineSyncAdapter.SYNC_EXTRAS_ALL_LOCATIONS, true);
+        assertTrue("Error: The extra should override the default",
+                SunshineSyncAdapter.isAllLocationsSync(manual));
+    }
+
+    /*
+        Four slow locations fit in one round of parallel fetches, so the sync takes about as long
+        as one of them, and everything is stored.
+     */
+    public void testLocationsAreFetchedInParallel() {
+        for (int i = 0; i < 4; i++) {
+            addRequest(SLOW_PREFIX + i);
+        }
+
+        long startMillis = SystemClock.elapsedRealtime();
+        new SunshineSyncAdapter(mContext, false).syncLocations(mRequests, SLOW_PREFIX + 0);
+        long elapsedMillis = SystemClock.elapsedRealtime() - startMillis;
+
+        assertTrue("Error: The fetches should have run in parallel, took " + elapsedMillis + "ms",
+                elapsedMillis < 3 * FETCH_DELAY_MILLIS);
+        for (String location : mRequests.keySet()) {
+            assertForecastStored(location);
+            assertNotNull("Error: The response should be cached once stored",
+                    mCache.get(mRequests.get(location).toString()));
+        }
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, Utility.getLocationStatus(mContext));
+    }
+
+    /*
+        A location that never answers is given up on after its timeout, without holding back the
+        others or leaving its response in the cache.
+     */
+    public void testStalledLocationTimesOut() {
+        addRequest("fast");
+        addRequest(STALLED_LOCATION);
+        addRequest(SLOW_PREFIX + "1");
+
+        SunshineSyncAdapter syncAdapter = new SunshineSyncAdapter(mContext, false);
+        long timeoutMillis = 2 * FETCH_DELAY_MILLIS;
+        syncAdapter.setLocationTimeoutMillis(timeoutMillis);
+
+        long startMillis = SystemClock.elapsedRealtime();
+        syncAdapter.syncLocations(mRequests, STALLED_LOCATION);
+        long elapsedMillis = SystemClock.elapsedRealtime() - startMillis;
+
+        assertTrue("Error: The stalled location should have been waited on for its timeout",
+                elapsedMillis >= timeoutMillis);
+        assertTrue("Error: The stalled location should have been given up on, took "
+                + elapsedMillis + "ms", elapsedMillis < 2 * timeoutMillis);
+
+        assertForecastStored("fast");
+        assertForecastStored(SLOW_PREFIX + "1");
+        assertFalse("Error: The stalled location should not be stored",
+                isForecastStored(STALLED_LOCATION));
+        assertEquals("Error: The stalled location is the preferred one, so its status is reported",
+                SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN, Utility.getLocationStatus(mContext));
+
+        // Once the server answers, the abandoned fetch drops its response instead of caching it.
+        mReleaseStalled.countDown();
+        SystemClock.sleep(timeoutMillis);
+        assertNull("Error: An abandoned response should not be cached",
+                mCache.get(mRequests.get(STALLED_LOCATION).toString()));
+    }
+
+    /*
+        A location queued behind a full round of fetches gets its own timeout from when it
+        starts, rather than running out of time while it waits.
+     */
+    public void testQueuedLocationGetsItsOwnTimeout() {
+        for (int i = 0; i < 5; i++) {
+            addRequest(SLOW_PREFIX + i);
+        }
+
+        SunshineSyncAdapter syncAdapter = new SunshineSyncAdapter(mContext, false);
+        syncAdapter.setLocationTimeoutMillis(FETCH_DELAY_MILLIS * 3 / 2);
+        syncAdapter.syncLocations(mRequests, SLOW_PREFIX + 4);
+
+        for (String location : mRequests.keySet()) {
+            assertForecastStored(location);
+        }
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, Utility.getLocationStatus(mContext));
+    }
+
+    private void addRequest(String location) {
+        mRequests.put(location, mServer.getUri("/data/2.5/forecast/daily/" + location));
+    }
+
+    private void assertForecastStored(String location) {
+        assertTrue("Error: The forecast for " + location + " should be stored",
+                isForecastStored(location));
+    }
+
+    private boolean isForecastStored(String location) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(location), null, null, null, null);
+        try {
+            return cursor.getCount() == 2;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String forecastJson(String location) {
+        String day = "{\"temp\":{\"min\":12.78,\"max\":23.06},\"pressure\":1003.67,\"humidity\":62,"
+                + "\"weather\":[{\"id\":500,\"main\":\"Rain\"}],\"speed\":1.46,\"deg\":270}";
+        return "{\"cod\":\"200\",\"city\":{\"name\":\"" + location + "\","
+                + "\"coord\":{\"lon\":-147.716,\"lat\":64.8378}},\"list\":[" + day + "," + day + "]}";
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.SunshineSettings;
+import com.example.android.sunshine.data.WeatherContract;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSyncResultDispatcher extends AndroidTestCase {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private SyncResultSnapshot mSnapshot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        mSnapshot = new SyncResultSnapshot(SunshineSettings.get(mContext), Collections.singletonList(
+                new SyncResultSnapshot.Day(today, 800, "Clear", 21.5, 12.25)));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SyncResultDispatcher.resetLatest();
+        super.tearDown();
+    }
+
+    public void testConsumersRunConcurrently() {
+        // Each consumer waits for all of them to have started, which only happens if they run
+        // at the same time.
+        final int consumerCount = 4;
+        final CountDownLatch started = new CountDownLatch(consumerCount);
+        final AtomicInteger allStarted = new AtomicInteger();
+        SyncResultDispatcher dispatcher = new SyncResultDispatcher(TIMEOUT_MILLIS);
+        for (int i = 0; i < consumerCount; i++) {
+            dispatcher.addConsumer(new SyncResultDispatcher.Consumer() {
+                @Override
+                public void onSyncResult(SyncResultSnapshot snapshot) throws Exception {
+                    started.countDown();
+                    if (started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        allStarted.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        assertEquals(consumerCount, dispatcher.dispatch(mSnapshot));
+        assertEquals("Every consumer should have seen the others start",
+                consumerCount, allStarted.get());
+    }
+
+    public void testFailingConsumerDoesNotStopOthers() {
+        final AtomicInteger received = new AtomicInteger();
+        SyncResultDispatcher dispatcher = new SyncResultDispatcher(TIMEOUT_MILLIS)
+                .addConsumer(new SyncResultDispatcher.Consumer() {
+                    @Override
+                    public void onSyncResult(SyncResultSnapshot snapshot) {
+                        throw new IllegalStateException("Consumer failure");
+                    }
+                })
+                .addConsumer(new SyncResultDispatcher.Consumer() {
+                    @Override
+                    public void onSyncResult(SyncResultSnapshot snapshot) {
+                        assertSame(mSnapshot, snapshot);
+                        received.incrementAndGet();
+                    }
+                });
+
+        assertEquals(1, dispatcher.dispatch(mSnapshot));
+        assertEquals(1, received.get());
+    }
+
+    public void testLatestSnapshotIsCurrent() {
+        new SyncResultDispatcher(TIMEOUT_MILLIS).dispatch(mSnapshot);
+
+        assertSame(mSnapshot, SyncResultDispatcher.getLatest());
+        assertSame("The services a sync starts should reuse its snapshot",
+                mSnapshot, SyncResultSnapshot.getCurrent(mContext));
+        assertFalse("A snapshot from yesterday is not current", mSnapshot.isCurrent(
+                SunshineSettings.get(mContext), System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Feeds the same OpenWeatherMap responses to the JSONObject parser and the streaming parser, and
+ * checks that they produce the same forecast or fail the same way.
+ */
+public class TestWeatherJsonParser extends AndroidTestCase {
+
+    private static final String CITY =
+            "\"city\":{\"id\":5861897,\"name\":\"Fairbanks\",\"coord\":{\"lon\":-147.716,\"lat\":64.8378},"
+                    + "\"country\":\"US\",\"population\":0}";
+
+    private static final String DAY_1 =
+            "{\"dt\":1437490800,\"temp\":{\"day\":21.55,\"min\":12.78,\"max\":23.06,\"night\":12.78},"
+                    + "\"pressure\":1003.67,\"humidity\":62,"
+                    + "\"weather\":[{\"id\":500,\"main\":\"Rain\",\"description\":\"light rain\",\"icon\":\"10d\"}],"
+                    + "\"speed\":1.46,\"deg\":270,\"clouds\":92,\"rain\":0.94}";
+
+    private static final String DAY_2 =
+            "{\"dt\":1437577200,\"temp\":{\"day\":25.3,\"min\":10.11,\"max\":26.9,\"night\":10.11},"
+                    + "\"pressure\":1005.2,\"humidity\":48,"
+                    + "\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"sky is clear\",\"icon\":\"01d\"},"
+                    + "{\"id\":701,\"main\":\"Mist\",\"description\":\"mist\",\"icon\":\"50d\"}],"
+                    + "\"speed\":2.1,\"deg\":180,\"clouds\":0}";
+
+    public void testForecastWithStringCode() throws Exception {
+        String body = "{\"cod\":\"200\",\"message\":0.0127," + CITY + ",\"cnt\":2,\"list\":["
+                + DAY_1 + "," + DAY_2 + "]}";
+        WeatherJsonParser.Forecast forecast = assertSameForecast(body);
+
+        assertEquals(HttpURLConnection.HTTP_OK, forecast.errorCode);
+        assertEquals("Fairbanks", forecast.cityName);
+        assertEquals(64.8378, forecast.cityLatitude);
+        assertEquals(-147.716, forecast.cityLongitude);
+        assertEquals(2, forecast.days.size());
+        assertEquals(500, (int) forecast.days.get(0).getAsInteger(WeatherEntry.COLUMN_WEATHER_ID));
+        assertEquals("Clear", forecast.days.get(1).getAsString(WeatherEntry.COLUMN_SHORT_DESC));
+    }
+
+    public void testForecastWithNumericCodeAfterTheList() throws Exception {
+        String body = "{\"list\":[" + DAY_1 + "," + DAY_2 + "]," + CITY + ",\"cnt\":2,\"cod\":200}";
+        WeatherJsonParser.Forecast forecast = assertSameForecast(body);
+
+        assertEquals(HttpURLConnection.HTTP_OK, forecast.errorCode);
+        assertEquals(2, forecast.days.size());
+    }
+
+    public void testForecastWithoutCode() throws Exception {
+        assertSameForecast("{" + CITY + ",\"list\":[" + DAY_1 + "]}");
+    }
+
+    public void testEmptyList() throws Exception {
+        WeatherJsonParser.Forecast forecast = assertSameForecast("{" + CITY + ",\"list\":[]}");
+        assertTrue(forecast.days.isEmpty());
+    }
+
+    public void testErrorCode() throws Exception {
+        WeatherJsonParser.Forecast forecast =
+                assertSameForecast("{\"cod\":\"404\",\"message\":\"Error: Not found city\"}");
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, forecast.errorCode);
+        assertNull(forecast.cityName);
+        assertTrue(forecast.days.isEmpty());
+    }
+
+    public void testNumericErrorCode() throws Exception {
+        WeatherJsonParser.Forecast forecast =
+                assertSameForecast("{\"cod\":404,\"message\":\"Error: Not found city\"}");
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, forecast.errorCode);
+    }
+
+    public void testMissingList() throws Exception {
+        assertBothFail("{\"cod\":\"200\"," + CITY + "}");
+    }
+
+    public void testMissingCity() throws Exception {
+        assertBothFail("{\"cod\":\"200\",\"list\":[" + DAY_1 + "]}");
+    }
+
+    public void testMissingCityName() throws Exception {
+        assertBothFail("{" + CITY.replace("\"name\":\"Fairbanks\",", "") + ",\"list\":[" + DAY_1 + "]}");
+    }
+
+    public void testMissingCoordinate() throws Exception {
+        assertBothFail("{" + CITY.replace("\"lat\":64.8378", "\"latitude\":64.8378")
+                + ",\"list\":[" + DAY_1 + "]}");
+    }
+
+    public void testMissingMaxTemperature() throws Exception {
+        assertMissingDayFieldFails("\"max\":23.06,", "");
+    }
+
+    public void testMissingMinTemperature() throws Exception {
+        assertMissingDayFieldFails("\"min\":12.78,", "");
+    }
+
+    public void testMissingWeatherId() throws Exception {
+        assertMissingDayFieldFails("\"id\":500,", "");
+    }
+
+    public void testMissingDescription() throws Exception {
+        assertMissingDayFieldFails("\"main\":\"Rain\",", "");
+    }
+
+    public void testEmptyWeatherArray() throws Exception {
+        assertMissingDayFieldFails(
+                "[{\"id\":500,\"main\":\"Rain\",\"description\":\"light rain\",\"icon\":\"10d\"}]", "[]");
+    }
+
+    public void testMissingHumidity() throws Exception {
+        assertMissingDayFieldFails("\"humidity\":62,", "");
+    }
+
+    public void testMissingDayFieldBeforeErrorCode() throws Exception {
+        // The error code wins over a broken forecast wherever it comes in the response.
+        String body = "{" + CITY + ",\"list\":[" + DAY_1.replace("\"max\":23.06,", "")
+                + "],\"cod\":\"500\"}";
+        WeatherJsonParser.Forecast forecast = assertSameForecast(body);
+        assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, forecast.errorCode);
+    }
+
+    public void testNonNumericField() throws Exception {
+        assertMissingDayFieldFails("\"humidity\":62", "\"humidity\":\"high\"");
+    }
+
+    /**
+     * Changes a field of the second day only, so the first day parses and the problem is found
+     * partway through the list.
+     */
+    private void assertMissingDayFieldFails(String field, String replacement) throws Exception {
+        assertTrue(DAY_1.contains(field));
+        assertBothFail("{\"cod\":\"200\"," + CITY + ",\"list\":[" + DAY_2 + ","
+                + DAY_1.replace(field, replacement) + "]}");
+    }
+
+    private WeatherJsonParser.Forecast assertSameForecast(String body) throws Exception {
+        WeatherJsonParser.Forecast expected = WeatherJsonParser.parseJson(body);
+        WeatherJsonParser.Forecast actual = parseStream(body);
+
+        assertEquals(expected.errorCode, actual.errorCode);
+        assertEquals(expected.cityName, actual.cityName);
+        assertEquals(expected.cityLatitude, actual.cityLatitude);
+        assertEquals(expected.cityLongitude, actual.cityLongitude);
+        assertEquals(expected.days.size(), actual.days.size());
+        for (int i = 0; i < expected.days.size(); i++) {
+            assertEquals("Day " + i + " differs", expected.days.get(i), actual.days.get(i));
+        }
+        return actual;
+    }
+
+    private void assertBothFail(String body) throws IOException {
+        try {
+            WeatherJsonParser.parseJson(body);
+            fail("parseJson should reject " + body);
+        } catch (JSONException expected) {
+        }
+
+        try {
+            parseStream(body);
+            fail("parseStream should reject " + body);
+        } catch (JSONException expected) {
+        }
+    }
+
+    private static WeatherJsonParser.Forecast parseStream(String body)
+            throws IOException, JSONException {
+        return WeatherJsonParser.parseStream(new ByteArrayInputStream(body.getBytes("UTF-8")));
+    }
+}
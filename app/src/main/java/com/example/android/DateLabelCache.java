@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android;
+
+import android.content.Context;
+import android.text.format.Time;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.R;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Remembers the day labels {@link Utility} hands out for the list, the widgets and the
+ * notification, keyed by julian day and kind of label.  A label only depends on its day, on which
+ * day today is, and on the locale and time zone, so the cache is cleared when any of those change:
+ * today is checked at least every hour and at midnight, the locale on every call, and
+ * {@link DateChangeReceiver} reports time zone and clock changes.
+ *
+ * The date formats are built once per locale and time zone, and only used when a label is missing.
+ */
+public final class DateLabelCache {
+
+    // "Tomorrow", "Wednesday" or "Mon Jun 8".
+    static final int KIND_FRIENDLY = 0;
+    // As above, but "Today, June 8" for today.
+    static final int KIND_FRIENDLY_LONG_TODAY = 1;
+    // "Wednesday, June 8".
+    static final int KIND_FULL_FRIENDLY = 2;
+    // "Today", "Tomorrow" or "Wednesday".
+    static final int KIND_DAY_NAME = 3;
+    // "June 08".
+    static final int KIND_MONTH_DAY = 4;
+    private static final int KIND_COUNT = 5;
+
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+
+    // Far more than a forecast and its detail screens need.
+    private static final int MAX_LABELS = 256;
+
+    private static final Object sLock = new Object();
+    private static final SparseArray<String> sLabels = new SparseArray<String>();
+
+    private static Locale sLocale;
+    private static long sGmtOffset;
+    private static int sCurrentJulianDay;
+    private static long sNextCheckMillis;
+
+    private static SimpleDateFormat sDayFormat;
+    private static SimpleDateFormat sMonthDayFormat;
+    private static SimpleDateFormat sShortDateFormat;
+
+    private DateLabelCache() {
+    }
+
+    static String getLabel(Context context, long dateInMillis, int kind) {
+        synchronized (sLock) {
+            refresh(System.currentTimeMillis());
+            return getLabelLocked(context, dateInMillis,
+                    Time.getJulianDay(dateInMillis, sGmtOffset), kind);
+        }
+    }
+
+    /**
+     * Forgets every label and date format, for when the time zone or the clock changes.
+     */
+    public static void invalidate() {
+        synchronized (sLock) {
+            sNextCheckMillis = 0;
+            sLocale = null;
+        }
+    }
+
+    private static String getLabelLocked(Context context, long dateInMillis, int julianDay, int kind) {
+        int key = julianDay * KIND_COUNT + kind;
+        String label = sLabels.get(key);
+        if (label == null) {
+            label = formatLocked(context, dateInMillis, julianDay, kind);
+            if (sLabels.size() >= MAX_LABELS) {
+                sLabels.clear();
+            }
+            sLabels.put(key, label);
+        }
+        return label;
+    }
+
+    private static String formatLocked(Context context, long dateInMillis, int julianDay, int kind) {
+        switch (kind) {
+            case KIND_FRIENDLY_LONG_TODAY:
+                // If the date we're building the String for is today's date, the format
+                // is "Today, June 24"
+                if (julianDay == sCurrentJulianDay) {
+                    return context.getString(R.string.format_full_friendly_date,
+                            context.getString(R.string.today),
+                            getLabelLocked(context, dateInMillis, julianDay, KIND_MONTH_DAY));
+                }
+                return getLabelLocked(context, dateInMillis, julianDay, KIND_FRIENDLY);
+            case KIND_FRIENDLY:
+                if (julianDay < sCurrentJulianDay + 7) {
+                    // If the input date is less than a week in the future, just return the day name.
+                    return getLabelLocked(context, dateInMillis, julianDay, KIND_DAY_NAME);
+                }
+                // Otherwise, use the form "Mon Jun 3"
+                return sShortDateFormat.format(dateInMillis);
+            case KIND_FULL_FRIENDLY:
+                return context.getString(R.string.format_full_friendly_date,
+                        getLabelLocked(context, dateInMillis, julianDay, KIND_DAY_NAME),
+                        getLabelLocked(context, dateInMillis, julianDay, KIND_MONTH_DAY));
+            case KIND_DAY_NAME:
+                if (julianDay == sCurrentJulianDay) {
+                    return context.getString(R.string.today);
+                } else if (julianDay == sCurrentJulianDay + 1) {
+                    return context.getString(R.string.tomorrow);
+                }
+                // Otherwise, the format is just the day of the week (e.g "Wednesday").
+                return sDayFormat.format(dateInMillis);
+            case KIND_MONTH_DAY:
+                return sMonthDayFormat.format(dateInMillis);
+            default:
+                throw new IllegalArgumentException("Unknown label kind: " + kind);
+        }
+    }
+
+    /*
+        Works out today and the time zone offset again when it's time to, and drops everything
+        that depended on them if they changed.
+     */
+    private static void refresh(long now) {
+        Locale locale = Locale.getDefault();
+        if (now < sNextCheckMillis && locale.equals(sLocale)) {
+            return;
+        }
+
+        Time time = new Time();
+        time.set(now);
+        int currentJulianDay = Time.getJulianDay(now, time.gmtoff);
+
+        if (!locale.equals(sLocale) || time.gmtoff != sGmtOffset
+                || currentJulianDay != sCurrentJulianDay || sDayFormat == null) {
+            sLabels.clear();
+            // The formats hold on to the time zone they were built in.
+            sDayFormat = new SimpleDateFormat("EEEE", locale);
+            sMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+            sShortDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+        }
+        sLocale = locale;
+        sGmtOffset = time.gmtoff;
+        sCurrentJulianDay = currentJulianDay;
+
+        // Check again at midnight, or in an hour in case daylight saving time starts or ends.
+        long millisToMidnight = ((24 - time.hour) * 60L - time.minute) * 60 * 1000L
+                - time.second * 1000L;
+        sNextCheckMillis = now + Math.min(millisToMidnight, HOUR_IN_MILLIS);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.R;
+
+/**
+ * An immutable snapshot of the settings that the list, the detail screen, the widgets, Muzei and
+ * the sync adapter read over and over.  {@link #get} hands out the current snapshot without any
+ * preference or resource lookup; a single listener on the default preferences throws it away
+ * whenever one of its settings changes, and the next call builds a new one.
+ */
+public final class SunshineSettings {
+
+    private static final Object sLock = new Object();
+    private static volatile SunshineSettings sCurrent;
+
+    // SharedPreferences only keeps a weak reference to its listeners.
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+    private static String[] sKeys;
+
+    private final String mLocationSetting;
+    private final boolean mLocationLatLonAvailable;
+    private final float mLocationLatitude;
+    private final float mLocationLongitude;
+    private final boolean mMetric;
+    private final String mArtPack;
+    private final boolean mUsingLocalGraphics;
+    private final boolean mNotificationsEnabled;
+
+    private SunshineSettings(Context context, SharedPreferences prefs) {
+        mLocationSetting = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+        mLocationLatLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        mLocationLatitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        mLocationLongitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric).equals(metric);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        mUsingLocalGraphics = mArtPack.equals(sunshineArtPack);
+
+        mNotificationsEnabled = prefs.getBoolean(
+                context.getString(R.string.pref_enable_notifications_key),
+                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+    }
+
+    /**
+     * @return the current settings.
+     */
+    public static SunshineSettings get(Context context) {
+        SunshineSettings settings = sCurrent;
+        if (settings != null) {
+            return settings;
+        }
+
+        synchronized (sLock) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+            if (sListener == null) {
+                sKeys = new String[]{
+                        appContext.getString(R.string.pref_location_key),
+                        appContext.getString(R.string.pref_location_latitude),
+                        appContext.getString(R.string.pref_location_longitude),
+                        appContext.getString(R.string.pref_units_key),
+                        appContext.getString(R.string.pref_art_pack_key),
+                        appContext.getString(R.string.pref_enable_notifications_key)
+                };
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                        // The location status changes on every sync, and isn't part of this.
+                        for (String settingsKey : sKeys) {
+                            if (settingsKey.equals(key)) {
+                                // Under the lock, so a snapshot being built from the old values
+                                // can't be published after this.
+                                synchronized (sLock) {
+                                    sCurrent = null;
+                                }
+                                return;
+                            }
+                        }
+                    }
+                };
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+            }
+
+            // Built after the listener is registered, so no change can be missed in between.
+            settings = sCurrent;
+            if (settings == null) {
+                settings = new SunshineSettings(appContext, prefs);
+                sCurrent = settings;
+            }
+            return settings;
+        }
+    }
+
+    /**
+     * Throws away the current snapshot.  Changes made on the main thread are picked up on their
+     * own; this is for code that changes a setting on another thread and reads it back right away,
+     * before the listener has been called.
+     */
+    public static void invalidate() {
+        synchronized (sLock) {
+            sCurrent = null;
+        }
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    public boolean isLocationLatLonAvailable() {
+        return mLocationLatLonAvailable;
+    }
+
+    public float getLocationLatitude() {
+        return mLocationLatitude;
+    }
+
+    public float getLocationLongitude() {
+        return mLocationLongitude;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return the URL format of the art pack, with a %s for the name of each picture.
+     */
+    public String getArtPack() {
+        return mArtPack;
+    }
+
+    public boolean isUsingLocalGraphics() {
+        return mUsingLocalGraphics;
+    }
+
+    public boolean areNotificationsEnabled() {
+        return mNotificationsEnabled;
+    }
+}
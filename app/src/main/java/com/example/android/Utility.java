@@ -20,13 +20,15 @@ import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.preference.PreferenceManager;
-import android.text.format.Time;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.art.ArtCache;
+import com.example.android.sunshine.common.TemperatureFormatter;
+import com.example.android.sunshine.common.WeatherConditionTable;
 import com.example.android.sunshine.sync.SunshineSyncAdapter;
 
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.Date;
 import java.util.Locale;
 
@@ -34,50 +36,183 @@ public class Utility {
     // We'll default our latlong to 0. Yay, "Earth!"
     public static float DEFAULT_LATLONG = 0F;
 
+    // The icons and art of each WeatherConditionTable condition.
+    private static final int[] ICON_RESOURCES = new int[WeatherConditionTable.CONDITION_COUNT];
+    private static final int[] ART_RESOURCES = new int[WeatherConditionTable.CONDITION_COUNT];
+
+    // The description of every code from WeatherConditionTable.MIN_CODE to MAX_CODE, or 0.
+    private static final int[] CONDITION_STRINGS =
+            new int[WeatherConditionTable.MAX_CODE - WeatherConditionTable.MIN_CODE + 1];
+
+    // What R.string.format_temperature starts with when TemperatureFormatter can stand in for it.
+    private static final String TEMPERATURE_NUMBER_FORMAT = "%1.0f";
+
+    private static final Object sTemperatureLock = new Object();
+    private static volatile TemperatureFormatter sTemperatureFormatter;
+    private static Locale sTemperatureLocale;
+
+    // The codes that have a description of their own.
+    private static final int[][] DESCRIBED_CONDITIONS = {
+            {500, R.string.condition_500},
+            {501, R.string.condition_501},
+            {502, R.string.condition_502},
+            {503, R.string.condition_503},
+            {504, R.string.condition_504},
+            {511, R.string.condition_511},
+            {520, R.string.condition_520},
+            {531, R.string.condition_531},
+            {600, R.string.condition_600},
+            {601, R.string.condition_601},
+            {602, R.string.condition_602},
+            {611, R.string.condition_611},
+            {612, R.string.condition_612},
+            {615, R.string.condition_615},
+            {616, R.string.condition_616},
+            {620, R.string.condition_620},
+            {621, R.string.condition_621},
+            {622, R.string.condition_622},
+            {701, R.string.condition_701},
+            {711, R.string.condition_711},
+            {721, R.string.condition_721},
+            {731, R.string.condition_731},
+            {741, R.string.condition_741},
+            {751, R.string.condition_751},
+            {761, R.string.condition_761},
+            {762, R.string.condition_762},
+            {771, R.string.condition_771},
+            {781, R.string.condition_781},
+            {800, R.string.condition_800},
+            {801, R.string.condition_801},
+            {802, R.string.condition_802},
+            {803, R.string.condition_803},
+            {804, R.string.condition_804},
+            {900, R.string.condition_900},
+            {901, R.string.condition_901},
+            {902, R.string.condition_902},
+            {903, R.string.condition_903},
+            {904, R.string.condition_904},
+            {905, R.string.condition_905},
+            {906, R.string.condition_906},
+            {951, R.string.condition_951},
+            {952, R.string.condition_952},
+            {953, R.string.condition_953},
+            {954, R.string.condition_954},
+            {955, R.string.condition_955},
+            {956, R.string.condition_956},
+            {957, R.string.condition_957},
+            {958, R.string.condition_958},
+            {959, R.string.condition_959},
+            {960, R.string.condition_960},
+            {961, R.string.condition_961},
+            {962, R.string.condition_962}
+    };
+
+    static {
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_STORM] = R.drawable.ic_storm;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_RAIN] = R.drawable.ic_light_rain;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_RAIN] = R.drawable.ic_rain;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_SNOW] = R.drawable.ic_snow;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_FOG] = R.drawable.ic_fog;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_TORNADO] = R.drawable.ic_storm;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_CLEAR] = R.drawable.ic_clear;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_CLOUDS] = R.drawable.ic_light_clouds;
+        ICON_RESOURCES[WeatherConditionTable.CONDITION_CLOUDS] = R.drawable.ic_cloudy;
+
+        ART_RESOURCES[WeatherConditionTable.CONDITION_STORM] = R.drawable.art_storm;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_RAIN] = R.drawable.art_light_rain;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_RAIN] = R.drawable.art_rain;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_SNOW] = R.drawable.art_snow;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_FOG] = R.drawable.art_fog;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_TORNADO] = R.drawable.art_storm;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_CLEAR] = R.drawable.art_clear;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_CLOUDS] = R.drawable.art_light_clouds;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_CLOUDS] = R.drawable.art_clouds;
+
+        // Thunderstorms and drizzle share one description each.
+        for (int code = 200; code <= 232; code++) {
+            CONDITION_STRINGS[code - WeatherConditionTable.MIN_CODE] = R.string.condition_2xx;
+        }
+        for (int code = 300; code <= 321; code++) {
+            CONDITION_STRINGS[code - WeatherConditionTable.MIN_CODE] = R.string.condition_3xx;
+        }
+        for (int[] condition : DESCRIBED_CONDITIONS) {
+            CONDITION_STRINGS[condition[0] - WeatherConditionTable.MIN_CODE] = condition[1];
+        }
+    }
+
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.contains(context.getString(R.string.pref_location_latitude))
-                && prefs.contains(context.getString(R.string.pref_location_longitude));
+        return SunshineSettings.get(context).isLocationLatLonAvailable();
     }
 
     public static float getLocationLatitude(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getFloat(context.getString(R.string.pref_location_latitude),
-                DEFAULT_LATLONG);
+        return SunshineSettings.get(context).getLocationLatitude();
     }
 
     public static float getLocationLongitude(Context context) {
-        SharedPreferences prefs
-                = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getFloat(context.getString(R.string.pref_location_longitude),
-                DEFAULT_LATLONG);
+        return SunshineSettings.get(context).getLocationLongitude();
     }
 
     public static String getPreferredLocation(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_location_key),
-                context.getString(R.string.pref_location_default));
+        return SunshineSettings.get(context).getLocationSetting();
     }
 
     public static boolean isMetric(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(context.getString(R.string.pref_units_key),
-                context.getString(R.string.pref_units_metric))
-                .equals(context.getString(R.string.pref_units_metric));
+        return SunshineSettings.get(context).isMetric();
     }
 
     public static String formatTemperature(Context context, double temperature) {
-        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
-        // the values here.
-        String suffix = "\u00B0";
-        if (!isMetric(context)) {
-            temperature = (temperature * 1.8) + 32;
+        return formatTemperature(context, temperature, isMetric(context));
+    }
+
+    /**
+     * Formats the temperature in the given units rather than the ones currently set, for callers
+     * working from a {@link SunshineSettings} snapshot.
+     */
+    public static String formatTemperature(Context context, double temperature, boolean metric) {
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, the formatter
+        // converts the values.  For presentation, assume the user doesn't care about tenths of a
+        // degree.
+        TemperatureFormatter formatter = getTemperatureFormatter(context, metric);
+        if (formatter == null) {
+            if (!metric) {
+                temperature = (temperature * 1.8) + 32;
+            }
+            return String.format(context.getString(R.string.format_temperature), temperature);
+        }
+        return formatter.format(temperature);
+    }
+
+    /**
+     * @return a formatter for the current units and locale, or null if the temperature format
+     * isn't a number followed by a suffix and has to go through String.format.
+     */
+    public static TemperatureFormatter getTemperatureFormatter(Context context) {
+        return getTemperatureFormatter(context, isMetric(context));
+    }
+
+    /**
+     * @return a formatter for the given units and the current locale, or null as above.
+     */
+    public static TemperatureFormatter getTemperatureFormatter(Context context, boolean metric) {
+        Locale locale = Locale.getDefault();
+        TemperatureFormatter formatter = sTemperatureFormatter;
+        if (formatter != null && formatter.isMetric() == metric && locale.equals(sTemperatureLocale)) {
+            return formatter;
         }
 
-        // For presentation, assume the user doesn't care about tenths of a degree.
-        return String.format(context.getString(R.string.format_temperature), temperature);
+        synchronized (sTemperatureLock) {
+            String format = context.getString(R.string.format_temperature);
+            if (!format.startsWith(TEMPERATURE_NUMBER_FORMAT)
+                    || format.indexOf('%', TEMPERATURE_NUMBER_FORMAT.length()) >= 0) {
+                return null;
+            }
+            formatter = new TemperatureFormatter(metric,
+                    DecimalFormatSymbols.getInstance(locale).getZeroDigit(),
+                    format.substring(TEMPERATURE_NUMBER_FORMAT.length()));
+            sTemperatureLocale = locale;
+            sTemperatureFormatter = formatter;
+            return formatter;
+        }
     }
 
     static String formatDate(long dateInMilliseconds) {
@@ -103,30 +238,8 @@ public class Utility {
         // For tomorrow:  "Tomorrow"
         // For the next 5 days: "Wednesday" (just the day name)
         // For all days after that: "Mon Jun 8"
-
-        Time time = new Time();
-        time.setToNow();
-        long currentTime = System.currentTimeMillis();
-        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
-        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
-
-        // If the date we're building the String for is today's date, the format
-        // is "Today, June 24"
-        if (displayLongToday && julianDay == currentJulianDay) {
-            String today = context.getString(R.string.today);
-            int formatId = R.string.format_full_friendly_date;
-            return String.format(context.getString(
-                    formatId,
-                    today,
-                    getFormattedMonthDay(context, dateInMillis)));
-        } else if ( julianDay < currentJulianDay + 7 ) {
-            // If the input date is less than a week in the future, just return the day name.
-            return getDayName(context, dateInMillis);
-        } else {
-            // Otherwise, use the form "Mon Jun 3"
-            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
-            return shortenedDateFormat.format(dateInMillis);
-        }
+        return DateLabelCache.getLabel(context, dateInMillis, displayLongToday
+                ? DateLabelCache.KIND_FRIENDLY_LONG_TODAY : DateLabelCache.KIND_FRIENDLY);
     }
 
     /**
@@ -138,13 +251,7 @@ public class Utility {
      * @return a user-friendly representation of the date.
      */
     public static String getFullFriendlyDayString(Context context, long dateInMillis) {
-
-        String day = getDayName(context, dateInMillis);
-        int formatId = R.string.format_full_friendly_date;
-        return String.format(context.getString(
-                formatId,
-                day,
-                getFormattedMonthDay(context, dateInMillis)));
+        return DateLabelCache.getLabel(context, dateInMillis, DateLabelCache.KIND_FULL_FRIENDLY);
     }
 
     /**
@@ -158,22 +265,7 @@ public class Utility {
     public static String getDayName(Context context, long dateInMillis) {
         // If the date is today, return the localized version of "Today" instead of the actual
         // day name.
-
-        Time t = new Time();
-        t.setToNow();
-        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
-        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
-        if (julianDay == currentJulianDay) {
-            return context.getString(R.string.today);
-        } else if ( julianDay == currentJulianDay +1 ) {
-            return context.getString(R.string.tomorrow);
-        } else {
-            Time time = new Time();
-            time.setToNow();
-            // Otherwise, the format is just the day of the week (e.g "Wednesday".
-            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-            return dayFormat.format(dateInMillis);
-        }
+        return DateLabelCache.getLabel(context, dateInMillis, DateLabelCache.KIND_DAY_NAME);
     }
 
     /**
@@ -184,12 +276,7 @@ public class Utility {
      * @return The day in the form of a string formatted "December 6"
      */
     public static String getFormattedMonthDay(Context context, long dateInMillis ) {
-        Time time = new Time();
-        time.setToNow();
-        SimpleDateFormat dbDateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-        SimpleDateFormat monthDayFormat = new SimpleDateFormat("MMMM dd");
-        String monthDayString = monthDayFormat.format(dateInMillis);
-        return monthDayString;
+        return DateLabelCache.getLabel(context, dateInMillis, DateLabelCache.KIND_MONTH_DAY);
     }
 
     public static String getFormattedWind(Context context, float windSpeed, float degrees) {
@@ -232,32 +319,8 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return -1;
+        int condition = WeatherConditionTable.getCondition(weatherId);
+        return condition == WeatherConditionTable.CONDITION_UNKNOWN ? -1 : ICON_RESOURCES[condition];
     }
 
     /**
@@ -267,10 +330,7 @@ public class Utility {
      * @return true if Sunshine is using local graphics, false otherwise.
      */
     public static boolean usingLocalGraphics(Context context) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
-        return prefs.getString(context.getString(R.string.pref_art_pack_key),
-                sunshineArtPack).equals(sunshineArtPack);
+        return SunshineSettings.get(context).isUsingLocalGraphics();
     }
 
     /**
@@ -282,36 +342,7 @@ public class Utility {
      * @return url for the corresponding weather artwork. null if no relation is found.
      */
     public static String getArtUrlForWeatherCondition(Context context, int weatherId) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
-                context.getString(R.string.pref_art_pack_sunshine));
-
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return String.format(Locale.US, formatArtUrl, "light_rain");
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId == 511) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return String.format(Locale.US, formatArtUrl, "fog");
-        } else if (weatherId == 761 || weatherId == 781) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId == 800) {
-            return String.format(Locale.US, formatArtUrl, "clear");
-        } else if (weatherId == 801) {
-            return String.format(Locale.US, formatArtUrl, "light_clouds");
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return String.format(Locale.US, formatArtUrl, "clouds");
-        }
-        return null;
+        return ArtCache.getArtUrl(SunshineSettings.get(context).getArtPack(), weatherId);
     }
 
     /**
@@ -321,32 +352,8 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        int condition = WeatherConditionTable.getCondition(weatherId);
+        return condition == WeatherConditionTable.CONDITION_UNKNOWN ? -1 : ART_RESOURCES[condition];
     }
 
     /**
@@ -357,172 +364,10 @@ public class Utility {
      * @return string for the weather condition. null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch (weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int stringId = weatherId < WeatherConditionTable.MIN_CODE || weatherId > WeatherConditionTable.MAX_CODE
+                ? 0 : CONDITION_STRINGS[weatherId - WeatherConditionTable.MIN_CODE];
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
         return context.getString(stringId);
     }
@@ -535,32 +380,7 @@ public class Utility {
      * @return A string URL to an appropriate image or null if no mapping is found
      */
     public static String getImageUrlForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId == 511) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
-        } else if (weatherId == 761 || weatherId == 781) {
-            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
-        } else if (weatherId == 800) {
-            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
-        } else if (weatherId == 801) {
-            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
-        }
-        return null;
+        return WeatherConditionTable.getImageUrl(weatherId);
     }
 
     /**
@@ -17,6 +17,7 @@ package com.example.android.sunshine;
 
 import android.content.Intent;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -37,7 +38,9 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.example.android.SunshineSettings;
 import com.example.android.Utility;
+import com.example.android.sunshine.art.ArtCache;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
@@ -203,12 +206,20 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             if ( Utility.usingLocalGraphics(getActivity()) ) {
                 mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
             } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
+                // Use weather art image, straight away if the prefetcher has pinned it
+                int artSize = getResources().getDimensionPixelSize(R.dimen.today_icon);
+                Bitmap art = ArtCache.getInstance(getActivity()).peek(
+                        SunshineSettings.get(getActivity()).getArtPack(), weatherId, artSize, artSize);
+                if (art != null) {
+                    Glide.clear(mIconView);
+                    mIconView.setImageBitmap(art);
+                } else {
+                    Glide.with(this)
+                            .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
+                            .error(Utility.getArtResourceForWeatherCondition(weatherId))
+                            .crossFade()
+                            .into(mIconView);
+                }
             }
 
             // Read date from cursor and update views for day of week and date
@@ -17,6 +17,7 @@ package com.example.android.sunshine;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
@@ -27,8 +28,10 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.Utility;
-import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.art.ArtCache;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
@@ -43,10 +46,17 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     private boolean mUseTodayLayout = true;
 
     private Cursor mCursor;
+    // The formatted rows of mCursor, which are all that binding needs.
+    private List<ForecastRowModel> mRows = Collections.emptyList();
+    // The rows the adapter currently shows, when they came from a ForecastCursorLoader.
+    private ForecastDiff.Snapshot mSnapshot;
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
+    // Sizes of the art in the today row and the other rows, as the ArtCache keys it.
+    final private int mTodayArtSize;
+    final private int mListArtSize;
 
     /**
      * Cache of the children views for a forecast list item.
@@ -71,9 +81,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            mClickHandler.onClick(mRows.get(adapterPosition).date, this);
             mICM.onClick(this);
         }
     }
@@ -86,6 +97,12 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        mTodayArtSize = context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+        mListArtSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        // Rows are identified by their date, which lets RecyclerView and the ItemChoiceManager
+        // follow them across the inserts and removals swapCursor dispatches.  This has to be set
+        // before the ItemChoiceManager registers its observer.
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
@@ -122,63 +139,60 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        ForecastRowModel row = mRows.get(position);
         int defaultImage;
-        boolean useLongToday;
+        String dateText;
+        int artSize;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
+                defaultImage = row.artResource;
+                dateText = row.longDateText;
+                artSize = mTodayArtSize;
                 break;
             default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
+                defaultImage = row.iconResource;
+                dateText = row.dateText;
+                artSize = mListArtSize;
         }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
+        if ( row.artUrl == null ) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
-                    .crossFade()
-                    .into(forecastAdapterViewHolder.mIconView);
+            // Art the prefetcher has pinned is shown straight away, without a fade.
+            Bitmap art = ArtCache.getInstance(mContext).peek(
+                    row.artPack, row.weatherId, artSize, artSize);
+            if (art != null) {
+                Glide.clear(forecastAdapterViewHolder.mIconView);
+                forecastAdapterViewHolder.mIconView.setImageBitmap(art);
+            } else {
+                Glide.with(mContext)
+                        .load(row.artUrl)
+                        .error(defaultImage)
+                        .crossFade()
+                        .into(forecastAdapterViewHolder.mIconView);
+            }
         }
 
         // this enables better animations. even if we lose state due to a device rotation,
         // the animator can use this to re-find the original view
         ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
 
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
-
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
-
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+        // Everything else was formatted when the rows were loaded.
+        forecastAdapterViewHolder.mDateView.setText(dateText);
 
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        forecastAdapterViewHolder.mDescriptionView.setText(row.description);
+        forecastAdapterViewHolder.mDescriptionView.setContentDescription(row.descriptionContentDescription);
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        forecastAdapterViewHolder.mHighTempView.setText(row.highText);
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(row.highContentDescription);
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        forecastAdapterViewHolder.mLowTempView.setText(row.lowText);
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(row.lowContentDescription);
 
         mICM.onBindViewHolder(forecastAdapterViewHolder, position);
     }
@@ -192,7 +206,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
-        mUseTodayLayout = useTodayLayout;
+        if (mUseTodayLayout != useTodayLayout) {
+            mUseTodayLayout = useTodayLayout;
+            notifyDataSetChanged();
+        }
     }
 
     public int getSelectedItemPosition() {
@@ -204,15 +221,51 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return (position == 0 && mUseTodayLayout) ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).date;
+    }
+
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        return mRows.size();
     }
 
+    /**
+     * Swaps in a new cursor.  If it comes from a {@link ForecastCursorLoader} its rows are already
+     * formatted, and with a diff from the rows shown now only the rows that changed are rebound;
+     * otherwise the whole list is.
+     */
     public void swapCursor(Cursor newCursor) {
+        if (newCursor == mCursor) {
+            return;
+        }
+
+        ForecastDiff diff = null;
+        ForecastDiff.Snapshot snapshot = null;
+        List<ForecastRowModel> rows;
+        if (newCursor instanceof ForecastCursorLoader.ForecastCursor) {
+            ForecastCursorLoader.ForecastCursor forecastCursor =
+                    (ForecastCursorLoader.ForecastCursor) newCursor;
+            rows = forecastCursor.getRows();
+            snapshot = forecastCursor.getSnapshot();
+            diff = forecastCursor.getDiff();
+            if (diff != null && diff.from != mSnapshot) {
+                // Diffed against rows this adapter never showed.
+                diff = null;
+            }
+        } else {
+            rows = ForecastRowModel.fromCursor(mContext, newCursor);
+        }
+
         mCursor = newCursor;
-        notifyDataSetChanged();
+        mRows = rows;
+        mSnapshot = snapshot;
+        if (diff == null) {
+            notifyDataSetChanged();
+        } else {
+            diff.dispatchTo(this, mUseTodayLayout);
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+import android.text.format.Time;
+
+import com.example.android.SunshineSettings;
+
+import java.util.List;
+
+/**
+ * A {@link CursorLoader} for the forecast list that also does the rest of the work the list
+ * needs on its background thread: it formats every row into a {@link ForecastRowModel}, and works
+ * out how the new result differs from the one it delivered before.  The result is a
+ * {@link ForecastCursor} carrying both.
+ */
+class ForecastCursorLoader extends CursorLoader {
+
+    /**
+     * The forecast rows, along with their formatted rows, their snapshot and the diff from the
+     * previous delivery.
+     */
+    static class ForecastCursor extends CursorWrapper {
+        private final List<ForecastRowModel> mRows;
+        private final ForecastDiff.Snapshot mSnapshot;
+        private final ForecastDiff mDiff;
+
+        ForecastCursor(Cursor cursor, List<ForecastRowModel> rows, ForecastDiff.Snapshot snapshot,
+                       ForecastDiff diff) {
+            super(cursor);
+            mRows = rows;
+            mSnapshot = snapshot;
+            mDiff = diff;
+        }
+
+        List<ForecastRowModel> getRows() {
+            return mRows;
+        }
+
+        ForecastDiff.Snapshot getSnapshot() {
+            return mSnapshot;
+        }
+
+        /**
+         * @return the diff from the previously delivered rows, or null if there's none.
+         */
+        ForecastDiff getDiff() {
+            return mDiff;
+        }
+    }
+
+    private final int mKeyColumn;
+
+    // Written on the main thread when a result is delivered, read by the next load.
+    private volatile ForecastDiff.Snapshot mDeliveredSnapshot;
+
+    ForecastCursorLoader(Context context, Uri uri, String[] projection, String sortOrder,
+                         int keyColumn) {
+        super(context, uri, projection, null, null, sortOrder);
+        mKeyColumn = keyColumn;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        ForecastDiff.Snapshot snapshot =
+                ForecastDiff.Snapshot.of(cursor, mKeyColumn, getDisplaySignature());
+        return new ForecastCursor(cursor, ForecastRowModel.fromCursor(getContext(), cursor),
+                snapshot, ForecastDiff.compute(mDeliveredSnapshot, snapshot));
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        if (!isReset()) {
+            mDeliveredSnapshot = cursor instanceof ForecastCursor
+                    ? ((ForecastCursor) cursor).getSnapshot() : null;
+        }
+        super.deliverResult(cursor);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mDeliveredSnapshot = null;
+    }
+
+    /*
+        Everything besides the rows themselves that changes what the list shows.  The settings
+        screen notifies the weather URI when units or the art pack change, and the day labels
+        shift at midnight, without any row being different.
+     */
+    private String getDisplaySignature() {
+        SunshineSettings settings = SunshineSettings.get(getContext());
+
+        Time time = new Time();
+        time.setToNow();
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+
+        return settings.isMetric() + "|" + settings.getArtPack() + "|" + currentJulianDay;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * The row-level difference between two forecast lists, so that {@link ForecastAdapter} only
+ * rebinds the days that actually changed after a sync.
+ *
+ * Rows are keyed by date and compared by a hash of their columns.  Both lists must be sorted by
+ * ascending date, which is how the forecast is always queried; anything else, or a change in how
+ * the rows are displayed, yields no diff and the adapter falls back to a full refresh.
+ */
+final class ForecastDiff {
+
+    /**
+     * The keys and content hashes of one forecast list, plus a signature of everything besides
+     * the rows (units, art pack, today's date) that changes how they're displayed.
+     */
+    static final class Snapshot {
+        final long[] keys;
+        final long[] hashes;
+        final String displaySignature;
+
+        Snapshot(long[] keys, long[] hashes, String displaySignature) {
+            this.keys = keys;
+            this.hashes = hashes;
+            this.displaySignature = displaySignature;
+        }
+
+        /**
+         * Reads every row of the cursor, leaving it before its first row.
+         */
+        static Snapshot of(Cursor cursor, int keyColumn, String displaySignature) {
+            long[] keys = new long[cursor.getCount()];
+            long[] hashes = new long[keys.length];
+            int columnCount = cursor.getColumnCount();
+
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                long hash = 17;
+                for (int i = 0; i < columnCount; i++) {
+                    hash = 31 * hash + hashColumn(cursor, i);
+                }
+                keys[cursor.getPosition()] = cursor.getLong(keyColumn);
+                hashes[cursor.getPosition()] = hash;
+            }
+            cursor.moveToPosition(-1);
+            return new Snapshot(keys, hashes, displaySignature);
+        }
+
+        private static long hashColumn(Cursor cursor, int column) {
+            switch (cursor.getType(column)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    return cursor.getLong(column);
+                case Cursor.FIELD_TYPE_FLOAT:
+                    return Double.doubleToLongBits(cursor.getDouble(column));
+                case Cursor.FIELD_TYPE_STRING:
+                    return cursor.getString(column).hashCode();
+                case Cursor.FIELD_TYPE_BLOB:
+                    return Arrays.hashCode(cursor.getBlob(column));
+                default:
+                    return 0;
+            }
+        }
+
+        private boolean isSorted() {
+            for (int i = 1; i < keys.length; i++) {
+                if (keys[i - 1] >= keys[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_CHANGE = 2;
+
+    final Snapshot from;
+    final Snapshot to;
+
+    // (op, position, count) triples, in the order they must be dispatched.
+    private final int[] mOps;
+    private final int mOpCount;
+
+    private ForecastDiff(Snapshot from, Snapshot to, int[] ops, int opCount) {
+        this.from = from;
+        this.to = to;
+        mOps = ops;
+        mOpCount = opCount;
+    }
+
+    /**
+     * @return the operations that turn the from list into the to list, or null when the two
+     * can't be compared and everything has to be rebound.
+     */
+    static ForecastDiff compute(Snapshot from, Snapshot to) {
+        if (from == null || !from.displaySignature.equals(to.displaySignature)
+                || !from.isSorted() || !to.isSorted()) {
+            return null;
+        }
+
+        // At most one operation per old and new row.
+        int[] ops = new int[3 * (from.keys.length + to.keys.length)];
+        int opCount = 0;
+
+        // Everything before position already matches the new list, so position is also the
+        // index into it.
+        int i = 0;
+        int position = 0;
+        while (i < from.keys.length || position < to.keys.length) {
+            int op;
+            if (position == to.keys.length
+                    || (i < from.keys.length && from.keys[i] < to.keys[position])) {
+                op = OP_REMOVE;
+                i++;
+            } else if (i == from.keys.length || from.keys[i] > to.keys[position]) {
+                op = OP_INSERT;
+                position++;
+            } else {
+                boolean changed = from.hashes[i] != to.hashes[position];
+                i++;
+                position++;
+                if (!changed) {
+                    continue;
+                }
+                op = OP_CHANGE;
+            }
+
+            // A removal stays at the same position, the others move one past it.
+            int opPosition = op == OP_REMOVE ? position : position - 1;
+            if (opCount > 0 && ops[3 * (opCount - 1)] == op) {
+                int last = 3 * (opCount - 1);
+                int end = op == OP_REMOVE ? ops[last + 1] : ops[last + 1] + ops[last + 2];
+                if (opPosition == end) {
+                    ops[last + 2]++;
+                    continue;
+                }
+            }
+            ops[3 * opCount] = op;
+            ops[3 * opCount + 1] = opPosition;
+            ops[3 * opCount + 2] = 1;
+            opCount++;
+        }
+        return new ForecastDiff(from, to, ops, opCount);
+    }
+
+    boolean isEmpty() {
+        return mOpCount == 0;
+    }
+
+    /**
+     * Notifies the adapter of every operation.  When the first row has its own layout, the rows
+     * that moved onto or off the first position are rebound too, so they get the right one.
+     */
+    void dispatchTo(RecyclerView.Adapter adapter, boolean firstRowHasOwnLayout) {
+        for (int i = 0; i < mOpCount; i++) {
+            int position = mOps[3 * i + 1];
+            int count = mOps[3 * i + 2];
+            switch (mOps[3 * i]) {
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(position, count);
+                    break;
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(position, count);
+                    break;
+                default:
+                    adapter.notifyItemRangeChanged(position, count);
+                    break;
+            }
+        }
+
+        if (firstRowHasOwnLayout && from.keys.length > 0 && to.keys.length > 0
+                && from.keys[0] != to.keys[0]) {
+            adapter.notifyItemChanged(0);
+            int oldFirst = Arrays.binarySearch(to.keys, from.keys[0]);
+            if (oldFirst > 0) {
+                adapter.notifyItemChanged(oldFirst);
+            }
+        }
+    }
+}
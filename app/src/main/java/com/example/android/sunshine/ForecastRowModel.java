@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.SunshineSettings;
+import com.example.android.Utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One row of the forecast list with every string and resource it shows already worked out, so
+ * that {@link ForecastAdapter} only has to assign fields when it binds.  The rows are built by
+ * {@link ForecastCursorLoader} on its background thread, once per change in the data.
+ */
+final class ForecastRowModel {
+
+    final long date;
+    final int weatherId;
+
+    // "Today, June 8" for today when the first row has its own layout.
+    final String longDateText;
+    // "Today", "Tomorrow", "Wednesday" or "Mon Jun 8".
+    final String dateText;
+
+    final String description;
+    final String descriptionContentDescription;
+    final String highText;
+    final String highContentDescription;
+    final String lowText;
+    final String lowContentDescription;
+
+    final int iconResource;
+    final int artResource;
+    // Null when the local graphics are used.
+    final String artUrl;
+    // The art pack artUrl belongs to, which is part of the key of its art in the ArtCache.
+    final String artPack;
+
+    private ForecastRowModel(Context context, Cursor cursor, SunshineSettings settings) {
+        date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        longDateText = Utility.getFriendlyDayString(context, date, true);
+        dateText = Utility.getFriendlyDayString(context, date, false);
+
+        description = Utility.getStringForWeatherCondition(context, weatherId);
+        descriptionContentDescription = context.getString(R.string.a11y_forecast, description);
+
+        highText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        highContentDescription = context.getString(R.string.a11y_high_temp, highText);
+        lowText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        lowContentDescription = context.getString(R.string.a11y_low_temp, lowText);
+
+        iconResource = Utility.getIconResourceForWeatherCondition(weatherId);
+        artResource = Utility.getArtResourceForWeatherCondition(weatherId);
+        if (settings.isUsingLocalGraphics()) {
+            artUrl = null;
+            artPack = null;
+        } else {
+            artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
+            artPack = settings.getArtPack();
+        }
+    }
+
+    /**
+     * Builds a row for every row of the cursor, leaving it before its first row.
+     */
+    static List<ForecastRowModel> fromCursor(Context context, Cursor cursor) {
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+
+        SunshineSettings settings = SunshineSettings.get(context);
+        List<ForecastRowModel> rows = new ArrayList<ForecastRowModel>(cursor.getCount());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            rows.add(new ForecastRowModel(context, cursor, settings));
+        }
+        cursor.moveToPosition(-1);
+        return Collections.unmodifiableList(rows);
+    }
+}
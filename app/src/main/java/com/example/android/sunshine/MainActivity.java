@@ -31,6 +31,7 @@ import android.view.MenuItem;
 import android.view.View;
 
 import com.example.android.Utility;
+import com.example.android.sunshine.art.ArtPackPrefetcher;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.gcm.RegistrationIntentService;
 import com.example.android.sunshine.sync.SunshineSyncAdapter;
@@ -91,6 +92,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
         }
 
         SunshineSyncAdapter.initializeSyncAdapter(this);
+        // Makes sure the art of the selected pack is on the device, and pinned in memory.
+        ArtPackPrefetcher.start(this);
 
         // If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
         // skip the registration and this device will not receive any downstream messages from
@@ -30,6 +30,7 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.example.android.Utility;
+import com.example.android.sunshine.art.ArtPackPrefetcher;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncAdapter;
 import com.google.android.gms.location.places.Place;
@@ -177,7 +178,9 @@ public class SettingsActivity extends PreferenceActivity
             Preference locationPreference = findPreference(getString(R.string.pref_location_key));
             bindPreferenceSummaryToValue(locationPreference);
         } else if ( key.equals(getString(R.string.pref_art_pack_key)) ) {
-            // art pack have changed. update lists of weather entries accordingly
+            // art pack have changed. fetch the new pack's art, and update lists of weather
+            // entries accordingly
+            ArtPackPrefetcher.start(this);
             getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
         }
     }
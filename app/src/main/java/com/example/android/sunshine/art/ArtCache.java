@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.art;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.android.CacheFiles;
+import com.example.android.sunshine.common.WeatherConditionTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The weather art of the remote art packs, kept on disk as downloaded and in memory as decoded
+ * bitmaps.  Images are keyed by the art pack and the weather condition, so every weather id that
+ * shares an image shares the entry, and decoded in a few fixed sizes so that a handful of
+ * bitmaps serve every place the art is shown.
+ *
+ * {@link #get} only ever looks at what is already on the device, and is cheap enough to call
+ * before posting a notification; {@link #load} and {@link #loadAsync} download what's missing.
+ * The art of the selected pack can be pinned in memory, where the least recently used bitmaps
+ * of other sizes and packs can't push it out; {@link #peek} only looks in memory, and is safe to
+ * call while binding views.
+ */
+public class ArtCache {
+    private static final String LOG_TAG = ArtCache.class.getSimpleName();
+
+    // The sizes, in pixels, that the art is decoded to.  A request is served by the smallest
+    // bucket that covers both of its dimensions, or the largest one.
+    static final int[] SIZE_BUCKETS = {64, 128, 256, 512};
+
+    private static final String CACHE_DIRECTORY = "art";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+
+    private static ArtCache sInstance;
+
+    /**
+     * Told about a bitmap loaded by {@link #loadAsync}.  Called on the cache's worker thread.
+     */
+    public interface Callback {
+        void onArtLoaded(Bitmap art);
+    }
+
+    /**
+     * How much of an art pack is on the device.
+     */
+    public static final class Coverage {
+        private final int mTotal;
+        private final int mDownloaded;
+        private final int mPinned;
+
+        Coverage(int total, int downloaded, int pinned) {
+            mTotal = total;
+            mDownloaded = downloaded;
+            mPinned = pinned;
+        }
+
+        /**
+         * @return the number of distinct images in the pack.
+         */
+        public int getTotal() {
+            return mTotal;
+        }
+
+        /**
+         * @return the number of images on disk.
+         */
+        public int getDownloaded() {
+            return mDownloaded;
+        }
+
+        /**
+         * @return the number of images pinned in memory in every size asked for.
+         */
+        public int getPinned() {
+            return mPinned;
+        }
+
+        public boolean isComplete() {
+            return mDownloaded == mTotal && mPinned == mTotal;
+        }
+
+        @Override
+        public String toString() {
+            return mDownloaded + "/" + mTotal + " downloaded, " + mPinned + "/" + mTotal + " pinned";
+        }
+    }
+
+    private final File mDirectory;
+    private final LruCache<String, Bitmap> mBitmaps;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    // The decoded art of the pinned pack, which the LruCache can't evict.
+    private final Map<String, Bitmap> mPinned = new HashMap<String, Bitmap>();
+    private String mPinnedPack;
+
+    ArtCache(File directory, int maxMemoryBytes) {
+        mDirectory = directory;
+        mBitmaps = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    public static synchronized ArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            // The decoded art may use up to an eighth of the heap.
+            int maxMemoryBytes =
+                    (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+            sInstance = new ArtCache(new File(context.getApplicationContext().getFilesDir(),
+                    CACHE_DIRECTORY), maxMemoryBytes);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the size bucket that serves a request of the given dimensions.
+     */
+    static int getSizeBucket(int width, int height) {
+        int size = Math.max(width, height);
+        for (int bucket : SIZE_BUCKETS) {
+            if (bucket >= size) {
+                return bucket;
+            }
+        }
+        return SIZE_BUCKETS[SIZE_BUCKETS.length - 1];
+    }
+
+    /**
+     * @param artPack the art pack URL format, as stored in the preferences
+     * @return the URL of the image for the weather condition in the pack, or null if the
+     * condition has no art.
+     */
+    public static String getArtUrl(String artPack, int weatherId) {
+        String artSlug = WeatherConditionTable.getArtSlug(weatherId);
+        return artSlug == null ? null : String.format(Locale.US, artPack, artSlug);
+    }
+
+    /**
+     * Returns the art for the weather condition if it's already decoded in the size bucket for
+     * the given dimensions.  Never touches the disk or the network.
+     *
+     * @return the art, or null if it isn't in memory.
+     */
+    public Bitmap peek(String artPack, int weatherId, int width, int height) {
+        String artSlug = WeatherConditionTable.getArtSlug(weatherId);
+        if (artSlug == null) {
+            return null;
+        }
+        return getFromMemory(keyFor(artPack, artSlug, getSizeBucket(width, height)));
+    }
+
+    /**
+     * Returns the art for the weather condition if it's on the device, without any network
+     * access.  The bitmap fits in the size bucket for the given dimensions.
+     *
+     * @return the art, or null if it hasn't been downloaded.
+     */
+    public Bitmap get(String artPack, int weatherId, int width, int height) {
+        String artSlug = WeatherConditionTable.getArtSlug(weatherId);
+        if (artSlug == null) {
+            return null;
+        }
+        return getDecoded(artPack, artSlug, getSizeBucket(width, height));
+    }
+
+    /**
+     * Returns the art for the weather condition, downloading it first if it isn't on the device.
+     * Blocks, and must not be called on the main thread.
+     *
+     * @return the art, or null if the condition has no art or the image can't be decoded.
+     */
+    public Bitmap load(String artPack, int weatherId, int width, int height) throws IOException {
+        String artSlug = WeatherConditionTable.getArtSlug(weatherId);
+        if (artSlug == null) {
+            return null;
+        }
+        download(artPack, artSlug);
+        return getDecoded(artPack, artSlug, getSizeBucket(width, height));
+    }
+
+    /**
+     * Loads the art on the cache's worker thread, and hands it to the callback if there is any.
+     */
+    public void loadAsync(final String artPack, final int weatherId, final int width,
+                          final int height, final Callback callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Bitmap art = load(artPack, weatherId, width, height);
+                    if (art != null) {
+                        callback.onArtLoaded(art);
+                    }
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error loading art for weather " + weatherId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes every downloaded image of the pack in the size buckets for the given sizes, and
+     * keeps them in memory until another pack is pinned.
+     */
+    public void pin(String artPack, int[] sizes) {
+        synchronized (mPinned) {
+            if (!artPack.equals(mPinnedPack)) {
+                mPinned.clear();
+                mPinnedPack = artPack;
+            }
+        }
+
+        for (String artSlug : WeatherConditionTable.getArtSlugs()) {
+            if (!getFile(artPack, artSlug).exists()) {
+                continue;
+            }
+            for (int size : sizes) {
+                int bucket = getSizeBucket(size, size);
+                Bitmap bitmap = getDecoded(artPack, artSlug, bucket);
+                if (bitmap != null) {
+                    synchronized (mPinned) {
+                        // Another pack may have been pinned while this one was decoding.
+                        if (artPack.equals(mPinnedPack)) {
+                            mPinned.put(keyFor(artPack, artSlug, bucket), bitmap);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the images of every pack but the given one from disk, and drops them from memory.
+     *
+     * @param artPack the pack to keep, or null to keep none.
+     */
+    public synchronized void retainOnly(String artPack) {
+        String keep = artPack == null ? null : CacheFiles.hashKey(artPack);
+        File[] packDirectories = mDirectory.listFiles();
+        if (packDirectories != null) {
+            for (File packDirectory : packDirectories) {
+                if (!packDirectory.getName().equals(keep)) {
+                    deleteDirectory(packDirectory);
+                }
+            }
+        }
+
+        synchronized (mPinned) {
+            if (mPinnedPack != null && !mPinnedPack.equals(artPack)) {
+                mPinned.clear();
+                mPinnedPack = null;
+            }
+        }
+        mBitmaps.evictAll();
+    }
+
+    /**
+     * @return how much of the pack is on disk, and pinned in memory in the buckets for the given
+     * sizes.
+     */
+    public Coverage getCoverage(String artPack, int[] sizes) {
+        List<String> artSlugs = WeatherConditionTable.getArtSlugs();
+        int downloaded = 0;
+        int pinned = 0;
+        synchronized (mPinned) {
+            boolean packPinned = artPack.equals(mPinnedPack);
+            for (String artSlug : artSlugs) {
+                if (getFile(artPack, artSlug).exists()) {
+                    downloaded++;
+                }
+                boolean slugPinned = packPinned;
+                for (int i = 0; slugPinned && i < sizes.length; i++) {
+                    slugPinned = mPinned.containsKey(
+                            keyFor(artPack, artSlug, getSizeBucket(sizes[i], sizes[i])));
+                }
+                if (slugPinned) {
+                    pinned++;
+                }
+            }
+        }
+        return new Coverage(artSlugs.size(), downloaded, pinned);
+    }
+
+    /**
+     * Downloads the pack's image unless it's already on disk.  The image only appears once it
+     * has been completely written.
+     *
+     * @return the downloaded file.
+     */
+    File download(String artPack, String artSlug) throws IOException {
+        File file = getFile(artPack, artSlug);
+        if (file.exists()) {
+            return file;
+        }
+
+        synchronized (this) {
+            if (file.exists()) {
+                return file;
+            }
+            File packDirectory = file.getParentFile();
+            if (!packDirectory.isDirectory() && !packDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + packDirectory);
+            }
+
+            String url = String.format(Locale.US, artPack, artSlug);
+            HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+            File temp = new File(packDirectory, file.getName() + TEMP_SUFFIX);
+            InputStream in = null;
+            OutputStream out = null;
+            try {
+                urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+                int responseCode = urlConnection.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected response " + responseCode + " for " + url);
+                }
+
+                in = new BufferedInputStream(urlConnection.getInputStream());
+                out = new BufferedOutputStream(new FileOutputStream(temp));
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                out.close();
+                out = null;
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to store " + url);
+                }
+                return file;
+            } finally {
+                CacheFiles.closeQuietly(in);
+                CacheFiles.closeQuietly(out);
+                temp.delete();
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    File getFile(String artPack, String artSlug) {
+        return new File(new File(mDirectory, CacheFiles.hashKey(artPack)), artSlug);
+    }
+
+    private Bitmap getFromMemory(String key) {
+        synchronized (mPinned) {
+            Bitmap bitmap = mPinned.get(key);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        return mBitmaps.get(key);
+    }
+
+    private Bitmap getDecoded(String artPack, String artSlug, int bucket) {
+        String key = keyFor(artPack, artSlug, bucket);
+        Bitmap bitmap = getFromMemory(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = getFile(artPack, artSlug);
+        if (!file.exists()) {
+            return null;
+        }
+        bitmap = decode(file, bucket);
+        if (bitmap != null) {
+            mBitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // Samples the image down by powers of two while it stays at least as big as the bucket, then
+    // scales it to fit the bucket.
+    private static Bitmap decode(File file, int bucket) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e(LOG_TAG, "Unable to decode " + file);
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= bucket) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        int size = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (size <= bucket) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, bitmap.getWidth() * bucket / size),
+                Math.max(1, bitmap.getHeight() * bucket / size), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private static String keyFor(String artPack, String artSlug, int bucket) {
+        return artPack + "|" + artSlug + "@" + bucket;
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
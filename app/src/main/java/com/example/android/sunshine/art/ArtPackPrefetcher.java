@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.art;
+
+import android.annotation.SuppressLint;
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.android.SunshineSettings;
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.common.WeatherConditionTable;
+
+import java.io.IOException;
+
+/**
+ * IntentService which downloads every image of the selected art pack and pins it in the
+ * {@link ArtCache}, in the sizes the list, the detail screen, the widgets and the notification
+ * show it, so that none of them waits on the network the first time a condition comes up.  It
+ * runs when the app starts and whenever the pack changes, and does little once the pack is on
+ * the device.  The images of other packs are deleted.
+ */
+public class ArtPackPrefetcher extends IntentService {
+    private static final String LOG_TAG = ArtPackPrefetcher.class.getSimpleName();
+
+    public ArtPackPrefetcher() {
+        super("ArtPackPrefetcher");
+    }
+
+    public static void start(Context context) {
+        context.startService(new Intent(context, ArtPackPrefetcher.class));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        SunshineSettings settings = SunshineSettings.get(this);
+        ArtCache artCache = ArtCache.getInstance(this);
+        if (settings.isUsingLocalGraphics()) {
+            // The bundled art is the Sunshine pack, so nothing needs to be on disk.
+            artCache.retainOnly(null);
+            return;
+        }
+
+        ArtCache.Coverage coverage = prefetch(artCache, settings.getArtPack(), getPinnedSizes(this));
+        Log.d(LOG_TAG, "Art pack coverage: " + coverage);
+    }
+
+    /**
+     * @return the sizes, in pixels, that the art is shown in.
+     */
+    public static int[] getPinnedSizes(Context context) {
+        Resources resources = context.getResources();
+        @SuppressLint("InlinedApi")
+        int notificationSize = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        return new int[] {
+                resources.getDimensionPixelSize(R.dimen.list_icon),
+                resources.getDimensionPixelSize(R.dimen.today_icon),
+                notificationSize
+        };
+    }
+
+    /**
+     * Downloads whatever images of the pack are missing, pins them all in the buckets for the
+     * given sizes and drops every other pack.  An image that fails to download is skipped, and
+     * tried again the next time.  Blocks, and must not be called on the main thread.
+     *
+     * @return how much of the pack is now on the device.
+     */
+    static ArtCache.Coverage prefetch(ArtCache artCache, String artPack, int[] sizes) {
+        artCache.retainOnly(artPack);
+        for (String artSlug : WeatherConditionTable.getArtSlugs()) {
+            try {
+                artCache.download(artPack, artSlug);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error downloading art " + artSlug, e);
+            }
+        }
+        artCache.pin(artPack, sizes);
+        return artCache.getCoverage(artPack, sizes);
+    }
+}
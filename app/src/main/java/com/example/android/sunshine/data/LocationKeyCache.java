@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the row id of each location setting in the location table, in memory and in a small
+ * preferences file, so that neither the sync adapter nor WeatherProvider has to look it up again.
+ * The ids only change when the location table does, and WeatherProvider and WeatherDbHelper clear
+ * the cache whenever that happens.
+ */
+public class LocationKeyCache {
+
+    // Returned when a location setting isn't known.
+    public static final long NO_ID = -1;
+
+    private static final String PREFS_NAME = "location_keys";
+
+    private static LocationKeyCache sInstance;
+
+    private final SharedPreferences mPrefs;
+    private final Map<String, Long> mIds = new HashMap<String, Long>();
+    private final Map<Long, String> mLocationSettings = new HashMap<Long, String>();
+    private boolean mLoaded;
+
+    private LocationKeyCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized LocationKeyCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LocationKeyCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the row id of the given location setting, or {@link #NO_ID} if it isn't cached.
+     */
+    public synchronized long getId(String locationSetting) {
+        load();
+        Long id = mIds.get(locationSetting);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * @return the location setting of the given row id, or null if it isn't cached.
+     */
+    public synchronized String getLocationSetting(long id) {
+        load();
+        return mLocationSettings.get(id);
+    }
+
+    public synchronized void put(String locationSetting, long id) {
+        load();
+        mIds.put(locationSetting, id);
+        mLocationSettings.put(id, locationSetting);
+        mPrefs.edit().putLong(locationSetting, id).apply();
+    }
+
+    public synchronized void clear() {
+        mIds.clear();
+        mLocationSettings.clear();
+        mLoaded = true;
+        mPrefs.edit().clear().apply();
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Long) {
+                Long id = (Long) entry.getValue();
+                mIds.put(entry.getKey(), id);
+                mLocationSettings.put(id, entry.getKey());
+            }
+        }
+        mLoaded = true;
+    }
+}
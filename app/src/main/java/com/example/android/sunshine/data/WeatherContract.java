@@ -44,6 +44,24 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // Provider method for storing a batch of weather rows.  Only the rows whose content differs
+    // from what is stored are written, and only their dates are notified.  Pass the rows as a
+    // ContentValues array under EXTRA_WEATHER_VALUES.  The result holds the date and location id
+    // of every row written, in two arrays of the same length.
+    //
+    // Everything is written in one transaction.  Locations passed under EXTRA_LOCATION_VALUES are
+    // added first unless their location setting is already stored, and a weather row may then
+    // name its location by LocationEntry.COLUMN_LOCATION_SETTING instead of COLUMN_LOC_KEY.  When
+    // EXTRA_PURGE_DATE is given, the rows up to and including that date are deleted as well, and
+    // EXTRA_DELETED_COUNT in the result says how many.
+    public static final String METHOD_UPSERT_WEATHER = "upsert_weather";
+    public static final String EXTRA_WEATHER_VALUES = "weather_values";
+    public static final String EXTRA_LOCATION_VALUES = "location_values";
+    public static final String EXTRA_PURGE_DATE = "purge_date";
+    public static final String EXTRA_CHANGED_DATES = "changed_dates";
+    public static final String EXTRA_CHANGED_LOCATION_IDS = "changed_location_ids";
+    public static final String EXTRA_DELETED_COUNT = "deleted_count";
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
@@ -126,6 +144,9 @@ public class WeatherContract {
         // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
         public static final String COLUMN_DEGREES = "degrees";
 
+        // Hash of the forecast columns above, filled in by the provider.  Stored as a long.
+        public static final String COLUMN_HASH = "row_hash";
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
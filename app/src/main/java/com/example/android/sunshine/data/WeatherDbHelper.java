@@ -15,9 +15,13 @@
  */
 package com.example.android.sunshine.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.text.TextUtils;
 
 import com.example.android.sunshine.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
@@ -28,12 +32,93 @@ import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 4;
+
+    // Databases older than this are dropped rather than migrated.
+    static final int OLDEST_MIGRATABLE_VERSION = 2;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Page cache per connection, in KiB (a negative cache_size is a size rather than a page count).
+    private static final int CACHE_SIZE_KIB = 2048;
+    // Memory-mapped I/O limit.  Older SQLite versions ignore the pragma.
+    private static final long MMAP_SIZE_BYTES = 4 * 1024 * 1024;
+
+    // Every index in the database, each tagged with the schema version that introduced it.
+    static final DbIndex[] INDEXES = {
+            // Every forecast query joins on location_id and filters or sorts on date.  Carrying
+            // the columns shown in the list, the widgets and on the watch makes those queries
+            // covered, so they never have to visit the table rows.
+            new DbIndex(4, "weather_location_date_idx", WeatherEntry.TABLE_NAME,
+                    WeatherEntry.COLUMN_LOC_KEY,
+                    WeatherEntry.COLUMN_DATE,
+                    WeatherEntry.COLUMN_WEATHER_ID,
+                    WeatherEntry.COLUMN_MAX_TEMP,
+                    WeatherEntry.COLUMN_MIN_TEMP,
+                    WeatherEntry.COLUMN_SHORT_DESC)
+    };
+
+    static final class DbIndex {
+        final int version;
+        final String name;
+        final String sql;
+
+        DbIndex(int version, String name, String table, String... columns) {
+            this.version = version;
+            this.name = name;
+            this.sql = "CREATE INDEX IF NOT EXISTS " + name + " ON " + table +
+                    " (" + TextUtils.join(", ", columns) + ");";
+        }
+    }
+
+    private final Context mContext;
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mContext = context.getApplicationContext();
+
+        // With write-ahead logging the sync adapter's bulk insert no longer blocks the loaders
+        // and widgets reading the forecast.  SQLiteDatabase keeps a pool of read connections
+        // that run alongside the single writer.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        applyPragmas(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // onConfigure isn't called before Jelly Bean, so set things up once the database is open.
+            db.enableWriteAheadLogging();
+            applyPragmas(db);
+        }
+    }
+
+    /**
+     * Tunes the primary connection, which does all of the writing.  In WAL mode a synchronous
+     * setting of NORMAL only syncs at checkpoints, and the database can't be corrupted by a
+     * crash; at worst the last transactions are rolled back.  That's fine for a cache of online
+     * data.
+     */
+    private static void applyPragmas(SQLiteDatabase db) {
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
+
+        // mmap_size reports the new value back, so it has to go through rawQuery.
+        Cursor cursor = db.rawQuery("PRAGMA mmap_size = " + MMAP_SIZE_BYTES, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
@@ -70,6 +155,9 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
                 WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
 
+                // the content hash lets a sync skip rows that haven't changed
+                WeatherEntry.COLUMN_HASH + " INTEGER NOT NULL DEFAULT 0, " +
+
                 // Set up the location column as a foreign key to location table.
                 " FOREIGN KEY (" + WeatherEntry.COLUMN_LOC_KEY + ") REFERENCES " +
                 LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
@@ -81,16 +169,67 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        createIndexes(sqLiteDatabase, 0, DATABASE_VERSION);
+
+        // A new location table hands out new ids.
+        LocationKeyCache.getInstance(mContext).clear();
+    }
+
+    /**
+     * Creates the indexes introduced after fromVersion, up to and including toVersion.
+     */
+    static void createIndexes(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (DbIndex index : INDEXES) {
+            if (index.version > fromVersion && index.version <= toVersion) {
+                db.execSQL(index.sql);
+            }
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
+        // This database is only a cache for online data, but discarding it means an empty UI until
+        // the next sync finishes.  So the schema is migrated one version at a time, carrying the
+        // data forward.  Only databases older than any known schema are dropped and recreated.
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
+        if (oldVersion < OLDEST_MIGRATABLE_VERSION) {
+            recreate(sqLiteDatabase);
+            return;
+        }
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(sqLiteDatabase, version);
+        }
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // There's no way back from a newer schema, so start over from the online data.
+        recreate(sqLiteDatabase);
+    }
+
+    /**
+     * Brings the schema from version - 1 to version.  Each step must leave the database exactly as
+     * onCreate would have built it at that version.
+     */
+    static void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 3:
+                // Content hash used to skip unchanged rows during a sync.  Existing rows get 0,
+                // which never matches, so the first sync after the upgrade rewrites them once.
+                db.execSQL("ALTER TABLE " + WeatherEntry.TABLE_NAME + " ADD COLUMN " +
+                        WeatherEntry.COLUMN_HASH + " INTEGER NOT NULL DEFAULT 0");
+                break;
+            case 4:
+                // Only indexes, created below.
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+        createIndexes(db, version - 1, version);
+    }
+
+    private void recreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
@@ -23,19 +23,29 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class WeatherProvider extends ContentProvider {
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
+    private final WeatherQueryCache mQueryCache = new WeatherQueryCache();
+
+    // Passed to upsertWeather when no days are to be purged.
+    private static final long NO_PURGE = -1;
 
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,30 +62,73 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //weather.location_id = ?
+    static final String sLocationIdSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? ";
+
+    //weather.location_id = ? AND date >= ?
+    static final String sLocationIdWithStartDateSelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
+
+    //weather.location_id = ? AND date = ?
+    static final String sLocationIdAndDaySelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
+
+    // The columns that make up a weather row's content hash, in a fixed order.
+    private static final String[] sWeatherHashColumns = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+        long locationId = getLocationId(locationSetting);
 
         String[] selectionArgs;
         String selection;
 
-        if (startDate == 0) {
+        // Filter on the location id when it's known, so that the location table is only joined
+        // for its columns.  Otherwise the location setting does the job, and there's no such
+        // location anyway.
+        if (locationId != LocationKeyCache.NO_ID) {
+            if (startDate == 0) {
+                selection = sLocationIdSelection;
+                selectionArgs = new String[]{Long.toString(locationId)};
+            } else {
+                selection = sLocationIdWithStartDateSelection;
+                selectionArgs = new String[]{Long.toString(locationId), Long.toString(startDate)};
+            }
+        } else if (startDate == 0) {
             selection = sLocationSettingSelection;
             selectionArgs = new String[]{locationSetting};
         } else {
@@ -97,17 +150,56 @@ public class WeatherProvider extends ContentProvider {
             Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
+        long locationId = getLocationId(locationSetting);
+
+        String selection;
+        String[] selectionArgs;
+        if (locationId != LocationKeyCache.NO_ID) {
+            selection = sLocationIdAndDaySelection;
+            selectionArgs = new String[]{Long.toString(locationId), Long.toString(date)};
+        } else {
+            selection = sLocationSettingAndDaySelection;
+            selectionArgs = new String[]{locationSetting, Long.toString(date)};
+        }
 
         return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
                 projection,
-                sLocationSettingAndDaySelection,
-                new String[]{locationSetting, Long.toString(date)},
+                selection,
+                selectionArgs,
                 null,
                 null,
                 sortOrder
         );
     }
 
+    /**
+     * @return the row id of the given location setting, looked up in the location table and
+     * remembered if it isn't cached yet, or {@link LocationKeyCache#NO_ID} if there's no such
+     * location.
+     */
+    private long getLocationId(String locationSetting) {
+        LocationKeyCache locationKeys = LocationKeyCache.getInstance(getContext());
+        long locationId = locationKeys.getId(locationSetting);
+        if (locationId != LocationKeyCache.NO_ID) {
+            return locationId;
+        }
+
+        Cursor cursor = mOpenHelper.getReadableDatabase().query(
+                WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                locationId = cursor.getLong(0);
+                locationKeys.put(locationSetting, locationId);
+            }
+        } finally {
+            cursor.close();
+        }
+        return locationId;
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -175,16 +267,22 @@ public class WeatherProvider extends ContentProvider {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
         Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
-            // "weather/*/*"
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            // "weather/*/*" and "weather/*" are answered from the cache when possible
             case WEATHER_WITH_LOCATION_AND_DATE:
-            {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
-                break;
-            }
-            // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                String cacheKey = WeatherQueryCache.keyFor(uri, projection, sortOrder);
+                retCursor = mQueryCache.get(cacheKey);
+                if (retCursor == null) {
+                    long generation = mQueryCache.getGeneration();
+                    retCursor = match == WEATHER_WITH_LOCATION_AND_DATE
+                            ? getWeatherByLocationSettingAndDate(uri, projection, sortOrder)
+                            : getWeatherByLocationSetting(uri, projection, sortOrder);
+                    mQueryCache.put(cacheKey,
+                            WeatherContract.WeatherEntry.getLocationSettingFromUri(uri),
+                            retCursor, generation);
+                }
                 break;
             }
             // "weather"
@@ -233,6 +331,7 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
+                values.put(WeatherContract.WeatherEntry.COLUMN_HASH, computeRowHash(values));
                 long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
@@ -246,11 +345,17 @@ public class WeatherProvider extends ContentProvider {
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                String locationSetting =
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+                if (locationSetting != null) {
+                    LocationKeyCache.getInstance(getContext()).put(locationSetting, _id);
+                }
                 break;
             }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        invalidateQueryCache(match, values);
         getContext().getContentResolver().notifyChange(uri, null);
         return returnUri;
     }
@@ -270,17 +375,36 @@ public class WeatherProvider extends ContentProvider {
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    LocationKeyCache.getInstance(getContext()).clear();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
+            mQueryCache.invalidateAll();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsDeleted;
     }
 
+    /**
+     * Drops the cached query results a single row insert may have changed.  A new location only
+     * affects queries on its own location setting; a weather row is only tied to a location id,
+     * so everything goes.
+     */
+    private void invalidateQueryCache(int match, ContentValues values) {
+        String locationSetting = match == LOCATION
+                ? values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING) : null;
+        if (locationSetting != null) {
+            mQueryCache.invalidate(locationSetting);
+        } else {
+            mQueryCache.invalidateAll();
+        }
+    }
+
     private void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
@@ -299,17 +423,25 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER:
                 normalizeDate(values);
+                // A partial update can't be hashed, so make sure the next upsert rewrites the row.
+                if (!values.containsKey(WeatherContract.WeatherEntry.COLUMN_HASH)) {
+                    values.put(WeatherContract.WeatherEntry.COLUMN_HASH, 0);
+                }
                 rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
                         selectionArgs);
                 break;
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                if (rowsUpdated != 0) {
+                    LocationKeyCache.getInstance(getContext()).clear();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
+            mQueryCache.invalidateAll();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsUpdated;
@@ -317,29 +449,263 @@ public class WeatherProvider extends ContentProvider {
 
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
-        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
-                db.beginTransaction();
-                int returnCount = 0;
+                return upsertWeather(null, values, NO_PURGE).getLongArray(
+                        WeatherContract.EXTRA_CHANGED_DATES).length;
+            default:
+                return super.bulkInsert(uri, values);
+        }
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_UPSERT_WEATHER.equals(method)) {
+            extras.setClassLoader(ContentValues.class.getClassLoader());
+            ContentValues[] locations = toContentValues(
+                    extras.getParcelableArray(WeatherContract.EXTRA_LOCATION_VALUES));
+            ContentValues[] values = toContentValues(
+                    extras.getParcelableArray(WeatherContract.EXTRA_WEATHER_VALUES));
+            long purgeDate = extras.getLong(WeatherContract.EXTRA_PURGE_DATE, NO_PURGE);
+            return upsertWeather(locations, values == null ? new ContentValues[0] : values,
+                    purgeDate);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    private static ContentValues[] toContentValues(Parcelable[] parcelables) {
+        if (parcelables == null) {
+            return null;
+        }
+        ContentValues[] values = new ContentValues[parcelables.length];
+        for (int i = 0; i < parcelables.length; i++) {
+            values[i] = (ContentValues) parcelables[i];
+        }
+        return values;
+    }
+
+    /**
+     * Stores the given locations and weather rows and purges the old days in a single
+     * transaction, so a failure leaves none of them behind.  Locations whose setting is already
+     * stored are skipped.  Each weather row is compared with the stored row for the same location
+     * and date by content hash: unchanged rows are skipped, changed rows are updated in place and
+     * new rows are inserted.  Only the dates that were written are notified, unless days were
+     * purged, which reloads everything.
+     *
+     * @param locations the locations to add if they're missing, or null
+     * @param values    the weather rows, each with either a location id or a location setting
+     * @param purgeDate the last date to delete, or {@link #NO_PURGE}
+     * @return the dates and location ids of the rows that were written, and how many were purged.
+     */
+    private Bundle upsertWeather(ContentValues[] locations, ContentValues[] values, long purgeDate) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        long[] changedDates = new long[values.length];
+        long[] changedLocationIds = new long[values.length];
+        int changedCount = 0;
+        int deletedCount = 0;
+        // The locations added in this transaction, remembered only once it has committed.
+        Map<String, Long> addedLocations = new HashMap<String, Long>();
+
+        db.beginTransaction();
+        try {
+            if (locations != null) {
+                for (ContentValues location : locations) {
+                    String locationSetting = location.getAsString(
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+                    if (addedLocations.containsKey(locationSetting)
+                            || getLocationId(locationSetting) != LocationKeyCache.NO_ID) {
+                        continue;
+                    }
+                    long locationId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, location);
+                    if (locationId <= 0) {
+                        throw new android.database.SQLException(
+                                "Failed to insert location " + locationSetting);
+                    }
+                    addedLocations.put(locationSetting, locationId);
+                }
+            }
+
+            for (ContentValues value : values) {
+                resolveLocationKey(value, addedLocations);
+                normalizeDate(value);
+                long hash = computeRowHash(value);
+                value.put(WeatherContract.WeatherEntry.COLUMN_HASH, hash);
+
+                Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                Long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                if (locationId == null || date == null) {
+                    // Let the table constraints reject the row, as a plain insert would.
+                    db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                    continue;
+                }
+
+                String[] rowArgs = new String[]{locationId.toString(), date.toString()};
+                Cursor stored = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                        new String[]{WeatherContract.WeatherEntry.COLUMN_HASH},
+                        sLocationIdAndDaySelection, rowArgs, null, null, null);
+                boolean written;
                 try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
-                        }
+                    if (!stored.moveToFirst()) {
+                        written = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value) != -1;
+                    } else if (stored.getLong(0) != hash) {
+                        written = db.update(WeatherContract.WeatherEntry.TABLE_NAME, value,
+                                sLocationIdAndDaySelection, rowArgs) > 0;
+                    } else {
+                        written = false;
                     }
-                    db.setTransactionSuccessful();
                 } finally {
-                    db.endTransaction();
+                    stored.close();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
-                return returnCount;
-            default:
-                return super.bulkInsert(uri, values);
+
+                if (written) {
+                    changedDates[changedCount] = date;
+                    changedLocationIds[changedCount] = locationId;
+                    changedCount++;
+                }
+            }
+
+            if (purgeDate != NO_PURGE) {
+                deletedCount = db.delete(WeatherContract.WeatherEntry.TABLE_NAME,
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(purgeDate)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (!addedLocations.isEmpty()) {
+            LocationKeyCache locationKeys = LocationKeyCache.getInstance(getContext());
+            for (Map.Entry<String, Long> location : addedLocations.entrySet()) {
+                locationKeys.put(location.getKey(), location.getValue());
+                mQueryCache.invalidate(location.getKey());
+            }
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.LocationEntry.CONTENT_URI, null);
+        }
+
+        changedDates = Arrays.copyOf(changedDates, changedCount);
+        changedLocationIds = Arrays.copyOf(changedLocationIds, changedCount);
+        if (deletedCount > 0) {
+            // Rows of any location and date may be gone, as with a plain delete.
+            mQueryCache.invalidateAll();
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.CONTENT_URI, null);
+        } else {
+            notifyWeatherChanged(db, changedLocationIds, changedDates);
+        }
+
+        Bundle result = new Bundle();
+        result.putLongArray(WeatherContract.EXTRA_CHANGED_DATES, changedDates);
+        result.putLongArray(WeatherContract.EXTRA_CHANGED_LOCATION_IDS, changedLocationIds);
+        result.putInt(WeatherContract.EXTRA_DELETED_COUNT, deletedCount);
+        return result;
+    }
+
+    /**
+     * Replaces the location setting of a weather row that has no location id with the id of that
+     * location.  A row whose location can't be found is left without one, so that the table
+     * constraints reject it.
+     */
+    private void resolveLocationKey(ContentValues value, Map<String, Long> addedLocations) {
+        String locationSetting =
+                value.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (locationSetting == null) {
+            return;
         }
+        value.remove(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (value.containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY)) {
+            return;
+        }
+
+        Long locationId = addedLocations.get(locationSetting);
+        if (locationId == null) {
+            long storedId = getLocationId(locationSetting);
+            locationId = storedId == LocationKeyCache.NO_ID ? null : storedId;
+        }
+        if (locationId != null) {
+            value.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+        }
+    }
+
+    /**
+     * Drops the cached queries of each changed location and notifies the weather/[location]/[date]
+     * URI of each changed row, so that only the loaders and cursors showing that location or day
+     * reload.  Must be called after the transaction that wrote the rows has committed.
+     */
+    private void notifyWeatherChanged(SQLiteDatabase db, long[] locationIds, long[] dates) {
+        Map<Long, String> locationSettings = new HashMap<Long, String>();
+        for (int i = 0; i < dates.length; i++) {
+            String locationSetting;
+            if (locationSettings.containsKey(locationIds[i])) {
+                locationSetting = locationSettings.get(locationIds[i]);
+            } else {
+                locationSetting = resolveLocationSetting(db, locationIds[i]);
+                locationSettings.put(locationIds[i], locationSetting);
+                if (locationSetting != null) {
+                    mQueryCache.invalidate(locationSetting);
+                }
+            }
+
+            if (locationSetting == null) {
+                // Without a location setting there's no narrower URI to notify.
+                mQueryCache.invalidateAll();
+                getContext().getContentResolver().notifyChange(
+                        WeatherContract.WeatherEntry.CONTENT_URI, null);
+                return;
+            }
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationSetting, dates[i]),
+                    null);
+        }
+    }
+
+    /**
+     * @return the location setting of the location row, from the {@link LocationKeyCache} if it's
+     * there and otherwise from the database, or null if there's no such row.
+     */
+    private String resolveLocationSetting(SQLiteDatabase db, long locationId) {
+        String locationSetting = LocationKeyCache.getInstance(getContext())
+                .getLocationSetting(locationId);
+        if (locationSetting != null) {
+            return locationSetting;
+        }
+
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                WeatherContract.LocationEntry._ID + " = ?",
+                new String[]{Long.toString(locationId)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Hashes the forecast columns of a weather row.  Numbers are compared by value, so that an
+     * integer and a floating point column holding the same number hash alike.
+     */
+    static long computeRowHash(ContentValues values) {
+        long hash = 1125899906842597L;
+        for (String column : sWeatherHashColumns) {
+            Object value = values.get(column);
+            long bits;
+            if (value == null) {
+                bits = 0;
+            } else if (value instanceof Number) {
+                bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            } else {
+                bits = value.hashCode();
+            }
+            hash = 31 * hash + (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+
+    WeatherQueryCache getQueryCache() {
+        return mQueryCache;
     }
 
     // You do not need to call this method. This is a method specifically to assist the testing
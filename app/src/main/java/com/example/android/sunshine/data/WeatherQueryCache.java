@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-memory cache of the per-location weather queries that WeatherProvider answers
+ * over and over, such as today's forecast which the notification, the widgets, Muzei and the
+ * watch each ask for after every sync.
+ *
+ * Results are copied out of their cursor and handed back as a new {@link MatrixCursor} on every
+ * hit.  Every write to the provider invalidates the affected location, or everything when the
+ * location isn't known.  A generation count keeps a query that raced with a write from caching
+ * what it read before the write committed.
+ */
+class WeatherQueryCache {
+
+    // The least recently used results are dropped beyond this many entries.
+    private static final int MAX_ENTRIES = 32;
+    // Results bigger than this aren't worth holding on to.
+    private static final int MAX_ROWS = 32;
+
+    private static final class Entry {
+        final String locationSetting;
+        final String[] columnNames;
+        final Object[][] rows;
+
+        Entry(String locationSetting, String[] columnNames, Object[][] rows) {
+            this.locationSetting = locationSetting;
+            this.columnNames = columnNames;
+            this.rows = rows;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> mEntries =
+            new LinkedHashMap<String, Entry>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private long mGeneration;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    /**
+     * @return the key for a query on one of the per-location paths.  Those paths ignore the
+     * selection, so only the URI, projection and sort order matter.
+     */
+    static String keyFor(Uri uri, String[] projection, String sortOrder) {
+        return uri.toString() + '|' +
+                (projection == null ? "*" : TextUtils.join(",", projection)) + '|' + sortOrder;
+    }
+
+    /**
+     * @return the value to pass to {@link #put} for a query that is about to run.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return a fresh cursor over the cached result, or null on a miss.
+     */
+    Cursor get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = mEntries.get(key);
+        }
+        if (entry == null) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+        mHits.incrementAndGet();
+
+        MatrixCursor cursor = new MatrixCursor(entry.columnNames, entry.rows.length);
+        for (Object[] row : entry.rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * Copies the result of a query into the cache, unless a write has happened since the query
+     * started.  The cursor is left before its first row.
+     */
+    void put(String key, String locationSetting, Cursor cursor, long generation) {
+        if (cursor.getCount() > MAX_ROWS) {
+            return;
+        }
+
+        String[] columnNames = cursor.getColumnNames();
+        Object[][] rows = new Object[cursor.getCount()][];
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Object[] row = new Object[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row[i] = cursor.getString(i);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        row[i] = cursor.getBlob(i);
+                        break;
+                    default:
+                        row[i] = null;
+                        break;
+                }
+            }
+            rows[cursor.getPosition()] = row;
+        }
+        cursor.moveToPosition(-1);
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, new Entry(locationSetting, columnNames, rows));
+            }
+        }
+    }
+
+    /**
+     * Drops the cached results for one location setting.
+     */
+    synchronized void invalidate(String locationSetting) {
+        mGeneration++;
+        Iterator<Entry> entries = mEntries.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().locationSetting.equals(locationSetting)) {
+                entries.remove();
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    long getHitCount() {
+        return mHits.get();
+    }
+
+    long getMissCount() {
+        return mMisses.get();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.CacheFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * A small on-disk cache of forecast responses, keyed by the request URL.
+ *
+ * For every response that carries an ETag or Last-Modified header, the validators and the body
+ * are kept so that the next request for the same URL can be made conditional.  When the server
+ * answers 304 Not Modified, the sync can skip parsing and database writes altogether.
+ */
+public class ForecastResponseCache {
+    private static final String LOG_TAG = ForecastResponseCache.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY = "forecast_responses";
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final File mDirectory;
+
+    /**
+     * The validators of a cached response along with the location of its body.
+     */
+    public static class Entry {
+        final String url;
+        final String etag;
+        final String lastModified;
+        final File body;
+
+        Entry(String url, String etag, String lastModified, File body) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * Adds the conditional request headers for this entry.  Must be called before the
+         * connection is opened.
+         */
+        public void addValidators(HttpURLConnection urlConnection) {
+            if (etag != null) {
+                urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        public InputStream openBody() throws IOException {
+            return new BufferedInputStream(new FileInputStream(body));
+        }
+    }
+
+    public ForecastResponseCache(File directory) {
+        mDirectory = directory;
+    }
+
+    public static ForecastResponseCache open(Context context) {
+        return new ForecastResponseCache(new File(context.getCacheDir(), CACHE_DIRECTORY));
+    }
+
+    /**
+     * @return the cached entry for the given URL, or null if nothing complete has been stored.
+     */
+    public synchronized Entry get(String url) {
+        String key = CacheFiles.hashKey(url);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+        if (!meta.exists() || !body.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(meta)));
+            String storedUrl = in.readUTF();
+            if (!url.equals(storedUrl)) {
+                // Two URLs hashed to the same key; treat it as a miss.
+                return null;
+            }
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            return new Entry(url, etag, lastModified, body);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading cached response for " + url, e);
+            return null;
+        } finally {
+            CacheFiles.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Copies a fresh response to disk.  The entry only becomes visible to {@link #get(String)}
+     * once {@link #commit(Entry)} is called, so a response that fails to parse is never used
+     * as the basis of a conditional request.
+     *
+     * @param etag the response's ETag header, or null.
+     * @param lastModified the response's Last-Modified header, or null.
+     * @return the pending entry, or null if the response carries no validators and is not worth
+     * caching.  In that case nothing is read from the stream.
+     */
+    public synchronized Entry write(String url, String etag, String lastModified, InputStream body)
+            throws IOException {
+        if (etag == null && lastModified == null) {
+            return null;
+        }
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+
+        File temp = new File(mDirectory, CacheFiles.hashKey(url) + BODY_SUFFIX + TEMP_SUFFIX);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            CacheFiles.closeQuietly(out);
+        }
+        return new Entry(url, etag, lastModified, temp);
+    }
+
+    /**
+     * Makes an entry returned by {@link #write} the current entry for its URL.
+     */
+    public synchronized void commit(Entry entry) {
+        String key = CacheFiles.hashKey(entry.url);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+        File metaTemp = new File(mDirectory, key + META_SUFFIX + TEMP_SUFFIX);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(metaTemp)));
+            out.writeUTF(entry.url);
+            out.writeUTF(entry.etag == null ? "" : entry.etag);
+            out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+            out.close();
+            out = null;
+
+            if (!entry.body.equals(body) && !entry.body.renameTo(body)) {
+                throw new IOException("Unable to store body for " + entry.url);
+            }
+            if (!metaTemp.renameTo(meta)) {
+                throw new IOException("Unable to store validators for " + entry.url);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error caching response for " + entry.url, e);
+            remove(entry.url);
+        } finally {
+            CacheFiles.closeQuietly(out);
+        }
+    }
+
+    public synchronized void remove(String url) {
+        String key = CacheFiles.hashKey(url);
+        new File(mDirectory, key + META_SUFFIX).delete();
+        new File(mDirectory, key + META_SUFFIX + TEMP_SUFFIX).delete();
+        new File(mDirectory, key + BODY_SUFFIX).delete();
+        new File(mDirectory, key + BODY_SUFFIX + TEMP_SUFFIX).delete();
+    }
+
+    private static String emptyToNull(String value) {
+        return value.length() == 0 ? null : value;
+    }
+}
@@ -8,7 +8,6 @@ import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
@@ -22,6 +21,7 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
@@ -29,16 +29,16 @@ import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
 import com.example.android.sunshine.MainActivity;
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.art.ArtCache;
+import com.example.android.sunshine.common.WeatherPayload;
+import com.example.android.SunshineSettings;
 import com.example.android.Utility;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.muzei.WeatherMuzeiSource;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -48,8 +48,18 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -62,20 +72,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
-
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
-
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
     public @interface LocationStatus {}
@@ -86,8 +82,31 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
+    // Set in the sync extras to choose whether every stored location is refreshed or just the
+    // preferred one.  Without it, periodic syncs refresh them all and requested syncs, which follow
+    // a change of location or units, only the preferred one.
+    public static final String SYNC_EXTRAS_ALL_LOCATIONS = "sync_all_locations";
+
+    // At most this many locations are fetched at the same time in a multi-location sync.
+    private static final int MAX_PARALLEL_FETCHES = 4;
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+    // How long a multi-location sync waits for each location, counted from when its fetch starts.
+    private static final long LOCATION_TIMEOUT_MILLIS = CONNECT_TIMEOUT_MILLIS + 2 * READ_TIMEOUT_MILLIS;
+    // How long a sync waits for the widgets, Muzei, the notification and the watch to take the
+    // new forecast.  The watch alone may need to connect and then wait for two round trips.
+    private static final long DISPATCH_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+    // Whether forecast responses are parsed straight off the connection (the default) or read
+    // into a String and handed to the original JSONObject parser.
+    private static volatile boolean sUseStreamingParser = true;
+
+    private final ForecastResponseCache mResponseCache;
+    private long mLocationTimeoutMillis = LOCATION_TIMEOUT_MILLIS;
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
+        mResponseCache = ForecastResponseCache.open(context);
     }
 
     @Override
@@ -98,70 +117,301 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         // longitude, in case we are syncing based on a new Place Picker API result.
         Context context = getContext();
         String locationQuery = Utility.getPreferredLocation(context);
-        String locationLatitude = String.valueOf(Utility.getLocationLatitude(context));
-        String locationLongitude = String.valueOf(Utility.getLocationLongitude(context));
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        // Instead of always building the query based off of the location string, we want to
+        // potentially build a query using a lat/lon value. This will be the case when we are
+        // syncing based off of a new location from the Place Picker API. So we need to check
+        // if we have a lat/lon to work with, and use those when we do. Otherwise, the weather
+        // service may not understand the location address provided by the Place Picker API
+        // and the user could end up with no weather! The horror!
+        Uri builtUri;
+        if (Utility.isLocationLatLonAvailable(context)) {
+            builtUri = buildForecastUri(null,
+                    String.valueOf(Utility.getLocationLatitude(context)),
+                    String.valueOf(Utility.getLocationLongitude(context)));
+        } else {
+            builtUri = buildForecastUri(locationQuery, null, null);
+        }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+        if (isAllLocationsSync(extras)) {
+            syncAllLocations(builtUri, locationQuery);
+        } else {
+            fetchForecast(builtUri, locationQuery);
+        }
+    }
+
+    /**
+     * @return whether the sync should refresh every stored location, which periodic syncs do
+     * unless told otherwise in the extras.
+     */
+    static boolean isAllLocationsSync(Bundle extras) {
+        if (extras == null) {
+            return true;
+        }
+        return extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS,
+                !extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false));
+    }
 
+    /**
+     * Builds the forecast request for a location, either by its location setting or, when the
+     * latitude and longitude are given, by its coordinates.
+     */
+    private Uri buildForecastUri(String locationQuery, String latitude, String longitude) {
         String format = "json";
         String units = "metric";
         int numDays = 14;
 
+        // Construct the URL for the OpenWeatherMap query
+        // Possible parameters are avaiable at OWM's forecast API page, at
+        // http://openweathermap.org/API#forecast
+        final String FORECAST_BASE_URL =
+                "http://api.openweathermap.org/data/2.5/forecast/daily?";
+        final String QUERY_PARAM = "q";
+        final String LAT_PARAM = "lat";
+        final String LON_PARAM = "lon";
+        final String FORMAT_PARAM = "mode";
+        final String UNITS_PARAM = "units";
+        final String DAYS_PARAM = "cnt";
+        final String APPID_PARAM = "APPID";
+
+        Uri.Builder uriBuilder = Uri.parse(FORECAST_BASE_URL).buildUpon();
+        if (latitude != null && longitude != null) {
+            uriBuilder.appendQueryParameter(LAT_PARAM, latitude)
+                    .appendQueryParameter(LON_PARAM, longitude);
+        } else {
+            uriBuilder.appendQueryParameter(QUERY_PARAM, locationQuery);
+        }
+
+        return uriBuilder.appendQueryParameter(FORMAT_PARAM, format)
+                .appendQueryParameter(UNITS_PARAM, units)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
+                .appendQueryParameter(APPID_PARAM, getContext().getResources().getString(R.string.open_weather_api_key))
+                .build();
+    }
+
+    /**
+     * Requests the forecast at the given URI and stores it for the given location setting.
+     */
+    void fetchForecast(Uri builtUri, String locationQuery) {
+        storeForecasts(Collections.singletonList(downloadForecast(builtUri, locationQuery)),
+                locationQuery);
+    }
+
+    /**
+     * Refreshes every location in the location table along with the preferred one.  The
+     * forecasts are downloaded and parsed concurrently, at most {@link #MAX_PARALLEL_FETCHES} at
+     * a time, so the sync takes about as long as the slowest location instead of the sum of all
+     * of them.  Everything is then written in a single provider transaction.
+     */
+    void syncAllLocations(Uri preferredUri, String preferredLocation) {
+        Map<String, Uri> requests = new LinkedHashMap<String, Uri>();
+        requests.put(preferredLocation, preferredUri);
+
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                null, null, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    String locationSetting = cursor.getString(0);
+                    if (!requests.containsKey(locationSetting)) {
+                        requests.put(locationSetting, buildForecastUri(locationSetting, null, null));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        syncLocations(requests, preferredLocation);
+    }
+
+    /**
+     * Fetches the given locations concurrently and stores them together.  Each location gets
+     * {@link #LOCATION_TIMEOUT_MILLIS} from when its own fetch starts, so a slow location neither
+     * eats into the time of the ones after it nor gives extra time to the ones queued behind it.
+     *
+     * @param requests          the forecast request of each location setting
+     * @param preferredLocation the location setting whose status is reported
+     */
+    void syncLocations(Map<String, Uri> requests, String preferredLocation) {
+        Log.d(LOG_TAG, "syncLocations(): Fetching " + requests.size() + " locations...");
+
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_FETCHES, requests.size()));
+        List<LocationFetchTask> tasks = new ArrayList<LocationFetchTask>(requests.size());
+        List<Future<ForecastFetch>> futures = new ArrayList<Future<ForecastFetch>>(requests.size());
+        List<ForecastFetch> fetches = new ArrayList<ForecastFetch>(requests.size());
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String LAT_PARAM = "lat";
-            final String LON_PARAM = "lon";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri.Builder uriBuilder = Uri.parse(FORECAST_BASE_URL).buildUpon();
-
-            // Instead of always building the query based off of the location string, we want to
-            // potentially build a query using a lat/lon value. This will be the case when we are
-            // syncing based off of a new location from the Place Picker API. So we need to check
-            // if we have a lat/lon to work with, and use those when we do. Otherwise, the weather
-            // service may not understand the location address provided by the Place Picker API
-            // and the user could end up with no weather! The horror!
-            if (Utility.isLocationLatLonAvailable(context)) {
-                uriBuilder.appendQueryParameter(LAT_PARAM, locationLatitude)
-                        .appendQueryParameter(LON_PARAM, locationLongitude);
-            } else {
-                uriBuilder.appendQueryParameter(QUERY_PARAM, locationQuery);
+            for (Map.Entry<String, Uri> request : requests.entrySet()) {
+                LocationFetchTask task = new LocationFetchTask(request.getKey(), request.getValue());
+                tasks.add(task);
+                futures.add(executor.submit(task));
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                fetches.add(awaitFetch(tasks.get(i), futures.get(i)));
+            }
+        } catch (InterruptedException e) {
+            Log.e(LOG_TAG, "Interrupted while fetching locations", e);
+            Thread.currentThread().interrupt();
+            // None of the fetches still running will be stored.
+            for (int i = fetches.size(); i < tasks.size(); i++) {
+                futures.get(i).cancel(true);
+                tasks.get(i).abandon();
             }
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        storeForecasts(fetches, preferredLocation);
+    }
+
+    /**
+     * Waits for a location's fetch until its timeout, counted from when the fetch started rather
+     * than from when it was queued.
+     *
+     * @return the fetch, or a failed fetch if it timed out or threw.
+     */
+    private ForecastFetch awaitFetch(LocationFetchTask task, Future<ForecastFetch> future)
+            throws InterruptedException {
+        try {
+            while (true) {
+                long startMillis = task.getStartMillis();
+                long waitMillis = startMillis == 0 ? mLocationTimeoutMillis
+                        : startMillis + mLocationTimeoutMillis - SystemClock.elapsedRealtime();
+                try {
+                    return future.get(Math.max(0, waitMillis), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (startMillis != 0) {
+                        Log.e(LOG_TAG, "Timed out fetching " + task.locationSetting);
+                        break;
+                    }
+                    // Still queued behind other locations, so its time hasn't started yet.
+                }
+            }
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Error fetching " + task.locationSetting, e.getCause());
+        }
+        future.cancel(true);
+        task.abandon();
+        return new ForecastFetch(task.locationSetting, task.uri, LOCATION_STATUS_SERVER_DOWN);
+    }
+
+    /**
+     * Sets how long {@link #syncLocations} waits for each location.  For tests.
+     */
+    void setLocationTimeoutMillis(long locationTimeoutMillis) {
+        mLocationTimeoutMillis = locationTimeoutMillis;
+    }
+
+    /**
+     * Downloads the forecast of one location on an executor thread.  A fetch that is given up on
+     * drops whatever response it cached, whether it gets there before or after being abandoned,
+     * since that response will never be stored.
+     */
+    private class LocationFetchTask implements Callable<ForecastFetch> {
+        final String locationSetting;
+        final Uri uri;
+        // When the fetch started, on the elapsed realtime clock, or 0 while it's queued.
+        private volatile long mStartMillis;
+        private boolean mAbandoned;
+
+        LocationFetchTask(String locationSetting, Uri uri) {
+            this.locationSetting = locationSetting;
+            this.uri = uri;
+        }
 
-            Uri builtUri = uriBuilder.appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, getContext().getResources().getString(R.string.open_weather_api_key))
-                    .build();
+        long getStartMillis() {
+            return mStartMillis;
+        }
+
+        @Override
+        public ForecastFetch call() {
+            mStartMillis = SystemClock.elapsedRealtime();
+            ForecastFetch fetch = downloadForecast(uri, locationSetting);
+            synchronized (this) {
+                if (mAbandoned && fetch.pendingEntry != null) {
+                    mResponseCache.remove(fetch.cacheKey);
+                    fetch.pendingEntry = null;
+                }
+            }
+            return fetch;
+        }
+
+        synchronized void abandon() {
+            mAbandoned = true;
+            // Drops a response that was already written; one still to come is dropped in call().
+            mResponseCache.remove(uri.toString());
+        }
+    }
+
+    /**
+     * Requests and parses the forecast at the given URI without touching the provider.
+     *
+     * If an earlier response for the same URI is cached, the request is made conditional.  A 304
+     * Not Modified answer means the stored forecast is still current, so nothing is parsed and
+     * the returned fetch carries no forecast.
+     */
+    private ForecastFetch downloadForecast(Uri builtUri, String locationQuery) {
+        // These need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        BufferedReader reader = null;
 
-            URL url = new URL(builtUri.toString());
+        ForecastFetch fetch = new ForecastFetch(locationQuery, builtUri, LOCATION_STATUS_OK);
+
+        try {
+            URL url = new URL(fetch.cacheKey);
+            ForecastResponseCache.Entry cachedEntry = mResponseCache.get(fetch.cacheKey);
 
             // Create the request to OpenWeatherMap, and open the connection
             urlConnection = (HttpURLConnection) url.openConnection();
             urlConnection.setRequestMethod("GET");
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (cachedEntry != null) {
+                cachedEntry.addValidators(urlConnection);
+            }
             urlConnection.connect();
 
+            if (cachedEntry != null
+                    && urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                if (isForecastStored(locationQuery)) {
+                    Log.d(LOG_TAG, "Forecast for " + locationQuery + " not modified. Nothing to store.");
+                    return fetch;
+                }
+                // The rows are gone (the data was cleared, for instance), so rebuild them from
+                // the cached body rather than asking for the whole forecast again.
+                inputStream = cachedEntry.openBody();
+            } else {
+                inputStream = urlConnection.getInputStream();
+                if (inputStream == null) {
+                    // Nothing to do.
+                    return fetch;
+                }
+
+                // Responses carrying validators are copied to disk first and parsed from there.
+                fetch.pendingEntry = mResponseCache.write(fetch.cacheKey,
+                        urlConnection.getHeaderField(ForecastResponseCache.HEADER_ETAG),
+                        urlConnection.getHeaderField(ForecastResponseCache.HEADER_LAST_MODIFIED),
+                        inputStream);
+                if (fetch.pendingEntry != null) {
+                    inputStream.close();
+                    inputStream = fetch.pendingEntry.openBody();
+                }
+            }
+
+            if (sUseStreamingParser) {
+                // Rows are pulled straight off the stream; no response string is built.
+                fetch.forecast = getWeatherDataFromStream(inputStream);
+                return fetch;
+            }
+
             // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
             StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
             reader = new BufferedReader(new InputStreamReader(inputStream));
 
             String line;
@@ -174,20 +424,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             if (buffer.length() == 0) {
                 // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+                fetch.status = LOCATION_STATUS_SERVER_DOWN;
+                return fetch;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+            fetch.forecast = getWeatherDataFromJson(buffer.toString());
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            fetch.status = LOCATION_STATUS_SERVER_DOWN;
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            fetch.status = LOCATION_STATUS_SERVER_INVALID;
         } finally {
             if (urlConnection != null) {
                 urlConnection.disconnect();
@@ -198,9 +447,44 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 } catch (final IOException e) {
                     Log.e(LOG_TAG, "Error closing stream", e);
                 }
+            } else if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
             }
         }
-        return;
+        return fetch;
+    }
+
+    /**
+     * @return true if today's forecast for the given location setting is in the database.
+     */
+    private boolean isForecastStored(String locationSetting) {
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = getContext().getContentResolver().query(weatherUri,
+                new String[]{WeatherContract.WeatherEntry._ID}, null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Selects the parser used for forecast responses.  The streaming parser is the default; the
+     * original JSONObject parser is kept so the two can be compared.
+     *
+     * @param useStreamingParser true to parse straight off the connection, false to read the
+     *                           whole response into a String and parse it with JSONObject.
+     */
+    public static void setUseStreamingParser(boolean useStreamingParser) {
+        sUseStreamingParser = useStreamingParser;
     }
 
     /**
@@ -210,178 +494,182 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
      * Fortunately parsing is easy:  constructor takes the JSON string and converts it
      * into an Object hierarchy for us.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
+    private WeatherJsonParser.Forecast getWeatherDataFromJson(String forecastJsonStr)
             throws JSONException {
 
         Log.d(LOG_TAG, "getWeatherDataFromJson(): Retrieving weather JSON data...");
 
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+        return WeatherJsonParser.parseJson(forecastJsonStr);
+    }
 
-        final String OWM_MESSAGE_CODE = "cod";
+    /**
+     * Reads the forecast token by token from the given stream.  Unlike
+     * {@link #getWeatherDataFromJson(String)}, neither the response String nor a JSONObject tree
+     * is ever built.
+     */
+    private WeatherJsonParser.Forecast getWeatherDataFromStream(InputStream inputStream)
+            throws IOException, JSONException {
 
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-            Context context = getContext();
+        Log.d(LOG_TAG, "getWeatherDataFromStream(): Streaming weather JSON data...");
 
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+        return WeatherJsonParser.parseStream(inputStream);
+    }
 
-                switch (errorCode) {
+    /**
+     * Writes the parsed forecasts and their locations to the provider and purges older days, in
+     * one transaction, and lets everything that displays the weather know about the new data.
+     * Days are purged and the notification is checked even when every response was 304 Not
+     * Modified.  Cached responses are kept only for the forecasts that were stored.  The location
+     * status reported is the one for the preferred location.
+     */
+    private void storeForecasts(List<ForecastFetch> fetches, String preferredLocation) {
+        List<ContentValues> locations = new ArrayList<ContentValues>();
+        List<ContentValues> rows = new ArrayList<ContentValues>();
+        int julianStartDay = Integer.MAX_VALUE;
+        boolean anySucceeded = false;
+        @LocationStatus int preferredStatus = LOCATION_STATUS_UNKNOWN;
+
+        for (ForecastFetch fetch : fetches) {
+            WeatherJsonParser.Forecast forecast = fetch.forecast;
+            if (forecast != null) {
+                switch (forecast.errorCode) {
                     case HttpURLConnection.HTTP_OK:
+                        // The provider adds the location if it's new, in the same transaction
+                        // as its weather, and resolves the rows' location ids from the setting.
+                        ContentValues locationValues = new ContentValues();
+                        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, forecast.cityName);
+                        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, fetch.locationSetting);
+                        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, forecast.cityLatitude);
+                        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, forecast.cityLongitude);
+                        locations.add(locationValues);
+                        for (ContentValues weatherValues : forecast.days) {
+                            weatherValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                                    fetch.locationSetting);
+                        }
+                        rows.addAll(forecast.days);
+                        julianStartDay = Math.min(julianStartDay, forecast.julianStartDay);
                         break;
                     case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
+                        fetch.status = LOCATION_STATUS_INVALID;
+                        break;
                     default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
+                        fetch.status = LOCATION_STATUS_SERVER_DOWN;
+                        break;
                 }
             }
+            if (fetch.status == LOCATION_STATUS_OK) {
+                anySucceeded = true;
+            }
+            if (fetch.locationSetting.equals(preferredLocation)) {
+                preferredStatus = fetch.status;
+            }
+        }
 
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+        int count = rows.size();
+        int changedCount = 0;
+        int deletedCount = 0;
+        if (anySucceeded) {
+            // A 304 Not Modified carries no forecast, but the day still rolls over, so the purge
+            // runs whenever the server answered.
+            if (julianStartDay == Integer.MAX_VALUE) {
+                julianStartDay = new WeatherJsonParser.DayClock().julianStartDay;
+            }
+            Time dayTime = new Time();
 
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+            // The provider adds the new locations, writes only the rows that differ from what it
+            // already has and deletes old data so we don't build up an endless history, all in a
+            // single transaction.
+            Bundle extras = new Bundle();
+            extras.putParcelableArray(WeatherContract.EXTRA_LOCATION_VALUES,
+                    locations.toArray(new ContentValues[locations.size()]));
+            extras.putParcelableArray(WeatherContract.EXTRA_WEATHER_VALUES,
+                    rows.toArray(new ContentValues[count]));
+            extras.putLong(WeatherContract.EXTRA_PURGE_DATE, dayTime.setJulianDay(julianStartDay - 1));
+            Bundle result = getContext().getContentResolver().call(
+                    WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.METHOD_UPSERT_WEATHER, null, extras);
+            long[] changedDates = result == null
+                    ? null : result.getLongArray(WeatherContract.EXTRA_CHANGED_DATES);
+            changedCount = changedDates == null ? count : changedDates.length;
+            deletedCount = result == null ? 0 : result.getInt(WeatherContract.EXTRA_DELETED_COUNT);
+        }
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+        // The forecast is read back once, and the same snapshot is shared by everything that
+        // shows it.  The once a day notification is checked even when nothing changed.
+        SyncResultSnapshot snapshot = SyncResultSnapshot.read(getContext());
+        if (snapshot != null) {
+            dispatchSyncResult(snapshot, changedCount > 0 || deletedCount > 0);
+        }
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
+        for (ForecastFetch fetch : fetches) {
+            if (fetch.pendingEntry != null) {
+                if (fetch.status == LOCATION_STATUS_OK && fetch.forecast != null) {
+                    mResponseCache.commit(fetch.pendingEntry);
+                } else {
+                    mResponseCache.remove(fetch.cacheKey);
+                }
             }
+        }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                Log.d(LOG_TAG, "getWeatherDataFromJson(): Updating weather on notification, widgets, and wearable devices...");
+        Log.d(LOG_TAG, "Sync Complete. " + count + " Received, " + changedCount + " Changed, "
+                + deletedCount + " Deleted");
+        setLocationStatus(getContext(), preferredStatus);
+    }
 
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-                updateWear();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+    /**
+     * The outcome of requesting the forecast for one location.
+     */
+    private static class ForecastFetch {
+        final String locationSetting;
+        final String cacheKey;
+        @LocationStatus int status;
+        // The parsed forecast, or null if the request failed or the stored one is still current.
+        WeatherJsonParser.Forecast forecast;
+        // The response copied to disk, committed to the cache only once it has been stored.
+        ForecastResponseCache.Entry pendingEntry;
+
+        ForecastFetch(String locationSetting, Uri builtUri, @LocationStatus int status) {
+            this.locationSetting = locationSetting;
+            this.cacheKey = builtUri.toString();
+            this.status = status;
+        }
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+    /**
+     * Hands the snapshot to the widgets, Muzei and the watch when the forecast changed, and to the
+     * notification in any case, and waits until they have all finished.
+     */
+    private void dispatchSyncResult(SyncResultSnapshot snapshot, boolean forecastChanged) {
+        SyncResultDispatcher dispatcher = new SyncResultDispatcher(DISPATCH_TIMEOUT_MILLIS);
+        if (forecastChanged) {
+            Log.d(LOG_TAG, "dispatchSyncResult(): Updating weather on widgets and wearable devices...");
+
+            dispatcher.addConsumer(new SyncResultDispatcher.Consumer() {
+                @Override
+                public void onSyncResult(SyncResultSnapshot snapshot) {
+                    updateWidgets();
+                }
+            }).addConsumer(new SyncResultDispatcher.Consumer() {
+                @Override
+                public void onSyncResult(SyncResultSnapshot snapshot) {
+                    updateMuzei();
+                }
+            }).addConsumer(new SyncResultDispatcher.Consumer() {
+                @Override
+                public void onSyncResult(SyncResultSnapshot snapshot) {
+                    updateWear(snapshot);
+                }
+            });
         }
+        // The notification is a once a day summary, not a change alert, so it is checked
+        // whether or not the forecast changed.
+        dispatcher.addConsumer(new SyncResultDispatcher.Consumer() {
+            @Override
+            public void onSyncResult(SyncResultSnapshot snapshot) {
+                notifyWeather(snapshot);
+            }
+        });
+        dispatcher.dispatch(snapshot);
     }
 
     private void updateWidgets() {
@@ -402,161 +690,125 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void notifyWeather() {
+    private void notifyWeather(SyncResultSnapshot snapshot) {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
-                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
-
-        if ( displayNotifications ) {
+        if ( snapshot.getSettings().areNotificationsEnabled() ) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
 
             String lastNotificationKey = context.getString(R.string.pref_last_notification);
             long lastSync = prefs.getLong(lastNotificationKey, 0);
 
             if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
-
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
-
-                    int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
-                    Resources resources = context.getResources();
-                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
-
-                    // On Honeycomb and higher devices, we can retrieve the size of the large icon
-                    // Prior to that, we use a fixed size
-                    @SuppressLint("InlinedApi")
-                    int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-                    @SuppressLint("InlinedApi")
-                    int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
-                        largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
-                    }
-                    String title = context.getString(R.string.app_name);
-
-                    // Define the text of the forecast.
-                    String contentText = String.format(context.getString(R.string.format_notification),
-                            desc,
-                            Utility.formatTemperature(context, high),
-                            Utility.formatTemperature(context, low));
-
-                    // NotificationCompatBuilder is a very convenient way to build backward-compatible
-                    // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
-                            new NotificationCompat.Builder(getContext())
-                                    .setColor(resources.getColor(R.color.primary_light))
-                                    .setSmallIcon(iconId)
-                                    .setLargeIcon(largeIcon)
-                                    .setContentTitle(title)
-                                    .setContentText(contentText);
-
-                    // Make something interesting happen when the user clicks on the notification.
-                    // In this case, opening the app is sufficient.
-                    Intent resultIntent = new Intent(context, MainActivity.class);
-
-                    // The stack builder object will contain an artificial back stack for the
-                    // started Activity.
-                    // This ensures that navigating backward from the Activity leads out of
-                    // your application to the Home screen.
-                    TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
-                    stackBuilder.addNextIntent(resultIntent);
-                    PendingIntent resultPendingIntent =
-                            stackBuilder.getPendingIntent(
-                                    0,
-                                    PendingIntent.FLAG_UPDATE_CURRENT
-                            );
-                    mBuilder.setContentIntent(resultPendingIntent);
-
-                    NotificationManager mNotificationManager =
-                            (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
-                    // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
-                    mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
-
-                    //refreshing last sync
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putLong(lastNotificationKey, System.currentTimeMillis());
-                    editor.commit();
+                SyncResultSnapshot.Day today = snapshot.getToday();
+                int weatherId = today.getWeatherId();
+                double high = today.getHigh();
+                double low = today.getLow();
+                String desc = today.getDescription();
+
+                int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+                Resources resources = context.getResources();
+                int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+                SunshineSettings settings = snapshot.getSettings();
+                String artPack = settings.getArtPack();
+
+                // On Honeycomb and higher devices, we can retrieve the size of the large icon
+                // Prior to that, we use a fixed size
+                @SuppressLint("InlinedApi")
+                final int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                        ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                        : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+                @SuppressLint("InlinedApi")
+                final int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                        ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                        : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+
+                // The large icon never waits for the network.  The bundled art is the Sunshine
+                // pack; other packs are used when their art is already on the device, and
+                // otherwise the bundled art is shown until the download finishes.
+                ArtCache artCache = ArtCache.getInstance(context);
+                Bitmap largeIcon = null;
+                boolean loadArt = false;
+                if (!settings.isUsingLocalGraphics() && ArtCache.getArtUrl(artPack, weatherId) != null) {
+                    largeIcon = artCache.get(artPack, weatherId, largeIconWidth, largeIconHeight);
+                    loadArt = largeIcon == null;
+                }
+                if (largeIcon == null) {
+                    largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
+                }
+                String title = context.getString(R.string.app_name);
+
+                // Define the text of the forecast, in the units the snapshot was taken with.
+                String contentText = String.format(context.getString(R.string.format_notification),
+                        desc,
+                        Utility.formatTemperature(context, high, snapshot.isMetric()),
+                        Utility.formatTemperature(context, low, snapshot.isMetric()));
+
+                // NotificationCompatBuilder is a very convenient way to build backward-compatible
+                // notifications.  Just throw in some data.  It is updated in place when the art
+                // arrives, without alerting the user again.
+                final NotificationCompat.Builder mBuilder =
+                        new NotificationCompat.Builder(getContext())
+                                .setColor(resources.getColor(R.color.primary_light))
+                                .setSmallIcon(iconId)
+                                .setLargeIcon(largeIcon)
+                                .setContentTitle(title)
+                                .setContentText(contentText)
+                                .setOnlyAlertOnce(true);
+
+                // Make something interesting happen when the user clicks on the notification.
+                // In this case, opening the app is sufficient.
+                Intent resultIntent = new Intent(context, MainActivity.class);
+
+                // The stack builder object will contain an artificial back stack for the
+                // started Activity.
+                // This ensures that navigating backward from the Activity leads out of
+                // your application to the Home screen.
+                TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
+                stackBuilder.addNextIntent(resultIntent);
+                PendingIntent resultPendingIntent =
+                        stackBuilder.getPendingIntent(
+                                0,
+                                PendingIntent.FLAG_UPDATE_CURRENT
+                        );
+                mBuilder.setContentIntent(resultPendingIntent);
+
+                // Tells us when the user dismisses it, so that late art doesn't post it again.
+                final String dismissedKey = context.getString(R.string.pref_notification_dismissed);
+                prefs.edit().putBoolean(dismissedKey, false).commit();
+                mBuilder.setDeleteIntent(PendingIntent.getBroadcast(context, 0,
+                        new Intent(context, NotificationDismissedReceiver.class),
+                        PendingIntent.FLAG_UPDATE_CURRENT));
+
+                final NotificationManager mNotificationManager =
+                        (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
+                // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+                mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+
+                if (loadArt) {
+                    artCache.loadAsync(artPack, weatherId, largeIconWidth, largeIconHeight,
+                            new ArtCache.Callback() {
+                                @Override
+                                public void onArtLoaded(Bitmap art) {
+                                    // Posting again would bring back a notification that the
+                                    // user has already dismissed.
+                                    if (!PreferenceManager.getDefaultSharedPreferences(getContext())
+                                            .getBoolean(dismissedKey, false)) {
+                                        mBuilder.setLargeIcon(art);
+                                        mNotificationManager.notify(WEATHER_NOTIFICATION_ID,
+                                                mBuilder.build());
+                                    }
+                                }
+                            });
                 }
-                cursor.close();
-            }
-        }
-    }
-
-    /**
-     * Helper method to handle insertion of a new location in the weather database.
-     *
-     * @param locationSetting The location string used to request updates from the server.
-     * @param cityName A human-readable city name, e.g "Mountain View"
-     * @param lat the latitude of the city
-     * @param lon the longitude of the city
-     * @return the row ID of the added location.
-     */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
 
-        // First, check if the location with this city name exists in the db
-        Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
-                new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
-                null);
-
-        if (locationCursor.moveToFirst()) {
-            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
+                //refreshing last sync
+                SharedPreferences.Editor editor = prefs.edit();
+                editor.putLong(lastNotificationKey, System.currentTimeMillis());
+                editor.commit();
+            }
         }
-
-        locationCursor.close();
-        // Wait, that worked?  Yes!
-        return locationId;
     }
 
     /**
@@ -664,34 +916,15 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     // updateWear(): Sends the weather data to the paired Android Wear device.
-    private void updateWear() {
+    private void updateWear(SyncResultSnapshot snapshot) {
 
         Log.d(LOG_TAG, "updateWear(): Preparing data to send to the paired Android Wear device...");
 
-        String currentLocation = Utility.getPreferredLocation(getContext());
-        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(currentLocation, System.currentTimeMillis());
-        Cursor cursor = getContext().getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-        if (cursor != null && cursor.moveToFirst()) {
-
-            // Retrieves the weather ID, max, and min temps.
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String maxTemp = Utility.formatTemperature(getContext(), cursor.getDouble(INDEX_MAX_TEMP));
-            String minTemp = Utility.formatTemperature(getContext(), cursor.getDouble(INDEX_MIN_TEMP));
-            cursor.close();
-
-            Log.d(LOG_TAG, "updateWear(): Syncing weather data with Android Wear device...");
-
-            // Sends the weather data to the Android Wear device.
-            SunshineSyncWear wearSync = new SunshineSyncWear(getContext());
-            wearSync.syncWearWeather(String.valueOf(weatherId), maxTemp, minTemp);
-        } else {
-            if (cursor != null) {
-                Log.e(LOG_TAG, "updateWear(): ERROR: Cursor failed to move to the first row.");
-                cursor.close();
-            } else {
-                Log.e(LOG_TAG, "updateWear(): ERROR: Cursor was null.");
-            }
-        }
+        // Publishes the weather to the Android Wear devices over the shared connection, waiting
+        // on the sync thread until every node has answered. Nodes that already show the same
+        // weather are skipped.
+        WeatherPayload payload = snapshot.toWeatherPayload(System.currentTimeMillis());
+        Log.d(LOG_TAG, "updateWear(): Publishing weather data to Android Wear devices...");
+        WearWeatherPublisher.getInstance(getContext()).publish(payload);
     }
 }
\ No newline at end of file
@@ -1,31 +1,20 @@
 package com.example.android.sunshine.sync;
 
 import android.content.Context;
-import android.os.AsyncTask;
-import android.os.Bundle;
 import android.util.Log;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.MessageApi;
-import com.google.android.gms.wearable.Node;
-import com.google.android.gms.wearable.NodeApi;
-import com.google.android.gms.wearable.Wearable;
-import java.nio.charset.Charset;
-import java.util.Collection;
-import java.util.HashSet;
+import com.example.android.sunshine.common.WeatherPayload;
+import java.util.Set;
 
 /**
  * -------------------------------------------------------------------------------------------------
  * [SunshineSyncWear] CLASS
  * DEVELOPER: Michael Yoon Huh (HUHX0015)
  * DESCRIPTION: This class is responsible for synchronizing data to the paired Android Wear device.
+ * The connection and the connected nodes are shared through WearConnectionManager.
  * -------------------------------------------------------------------------------------------------
  */
 
-public class SunshineSyncWear implements GoogleApiClient.ConnectionCallbacks,
-        GoogleApiClient.OnConnectionFailedListener {
+public class SunshineSyncWear {
 
     /** CLASS VARIABLES ________________________________________________________________________ **/
 
@@ -33,114 +22,50 @@ public class SunshineSyncWear implements GoogleApiClient.ConnectionCallbacks,
     private static final String LOG_TAG = SunshineSyncWear.class.getSimpleName();
 
     // SYNC VARIABLES
-    private static final String SUNSHINE_WEATHER_PATH = "/sunshine-weather";
-    private GoogleApiClient mGoogleApiClient;
-
-    // WEATHER VARIABLES
-    private String mMaxTemp;
-    private String mMinTemp;
-    private String mWeatherId;
+    public static final String SUNSHINE_WEATHER_PATH = "/sunshine-weather";
+    public static final String SUNSHINE_WEATHER_REQUEST_PATH = "/sunshine-weather-request";
+    private final Context mContext;
+    private final WearConnectionManager mConnectionManager;
 
     /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
-    
-    // SunshineSyncWear(): Constructor for the SunshineSyncWear class. Sets up the GoogleApiClient.
-    public SunshineSyncWear(Context context) {
-
-        // Sets up the GoogleApiClient connection.
-        mGoogleApiClient = new GoogleApiClient.Builder(context)
-                .addApi(Wearable.API)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .build();
-    }
-
-    /** GOOGLE API CLIENT METHODS ______________________________________________________________ **/
-
-    // onConnected(): Runs when the client is connected.
-    @Override
-    public void onConnected(Bundle bundle) {
-
-        Log.d(LOG_TAG, "onConnected(): Google API client connection established.");
-
-        // Updates the nodes in the background.
-        SunshineNodeSyncTask syncTask = new SunshineNodeSyncTask();
-        syncTask.execute();
-    }
-
-    // onConnectionFailed(): Runs when the client fails to connect.
-    @Override
-    public void onConnectionFailed(ConnectionResult connectionResult) {
-        Log.d(LOG_TAG, "onConnectionFailed(): Google API client connection failed: " + connectionResult.getErrorMessage());
-    }
 
-    // onConnectionSuspended(): Runs when the client connection is suspended.
-    @Override
-    public void onConnectionSuspended(int i) {
-        Log.d(LOG_TAG, "onConnectionSuspended(): Google API client connection was suspended.");
+    // SunshineSyncWear(): Constructor for the SunshineSyncWear class. Uses the shared
+    // WearConnectionManager.
+    public SunshineSyncWear(Context context) {
+        mContext = context;
+        mConnectionManager = WearConnectionManager.getInstance(context);
     }
 
-    /** SYNC METHODS ___________________________________________________________________________ **/
-
-    // fetchNodes(): Retrieves the connected nodes.
-    private Collection<String> fetchNodes() {
-        HashSet<String> results = new HashSet<>();
-        NodeApi.GetConnectedNodesResult nodes = Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).await();
+    /** PAYLOAD METHODS ________________________________________________________________________ **/
 
-        for (Node node : nodes.getNodes()) {
-            results.add(node.getId());
+    // buildWeatherPayload(): Takes the raw forecast from today on for the preferred location from
+    // the last sync, or reads it if that's out of date. The watch formats it in its own locale.
+    // Returns null if there's no weather for today.
+    public WeatherPayload buildWeatherPayload() {
+        SyncResultSnapshot snapshot = SyncResultSnapshot.getCurrent(mContext);
+        if (snapshot == null) {
+            Log.e(LOG_TAG, "buildWeatherPayload(): ERROR: There's no weather for today.");
+            return null;
         }
-        return results;
+        return snapshot.toWeatherPayload(System.currentTimeMillis());
     }
 
-    // syncWearWeather(): Sets the weatherId, maxTemp, and minTemp values and initializes the
-    // connection.
-    public void syncWearWeather(String weatherId, String maxTemp, String minTemp) {
-
-        this.mMaxTemp = maxTemp;
-        this.mMinTemp = minTemp;
-        this.mWeatherId = weatherId;
-
-        Log.d(LOG_TAG, "syncWearWeather(): Connecting to Google API client...");
+    /** SYNC METHODS ___________________________________________________________________________ **/
 
-        mGoogleApiClient.connect();
+    // syncWearWeather(): Sends the encoded weather payload to every connected node and blocks
+    // until they have all answered. Returns the IDs of the nodes that received it.
+    public Set<String> syncWearWeather(WeatherPayload payload) {
+        return syncWearWeather(payload, mConnectionManager.getConnectedNodes());
     }
 
-    // updateNote(): Updates the requested node.
-    private void updateNode(String node) {
-
-        String dataString = mWeatherId + "," + mMaxTemp + "," + mMinTemp;
-        byte[] data = dataString.getBytes(Charset.forName("UTF-8"));
+    // syncWearWeather(): Sends the encoded weather payload to the specified nodes and blocks until
+    // they have all answered. Returns the IDs of the nodes that received it.
+    public Set<String> syncWearWeather(WeatherPayload payload, Set<String> nodeIds) {
 
-        Log.d(LOG_TAG, "updateNote(): Updating Android Wear with: " + dataString);
+        byte[] data = payload.encode();
 
-        PendingResult<MessageApi.SendMessageResult> messageResult = Wearable.MessageApi.sendMessage(mGoogleApiClient, node, SUNSHINE_WEATHER_PATH, data);
-        messageResult.setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
-                                            @Override
-                                            public void onResult(MessageApi.SendMessageResult sendMessageResult) {
-                                                Log.d(LOG_TAG, "onResult(): Node update result: " + sendMessageResult.toString());
-                                            }
-                                        }
-        );
-    }
+        Log.d(LOG_TAG, "syncWearWeather(): Updating Android Wear with " + data.length + " bytes: " + payload);
 
-    /** SUBCLASSES _____________________________________________________________________________ **/
-
-    /**
-     * --------------------------------------------------------------------------------------------
-     * [SunshineNodeSyncTask] CLASS
-     * DESCRIPTION: This is an AsyncTask-based class that handles the updating of the Nodes in the
-     * background.
-     * --------------------------------------------------------------------------------------------
-     */
-    private class SunshineNodeSyncTask extends AsyncTask<Void, Void, Void> {
-
-        @Override
-        protected Void doInBackground(Void... args) {
-            Collection<String> nodes = fetchNodes();
-            for (String node : nodes) {
-                updateNode(node);
-            }
-            return null;
-        }
+        return mConnectionManager.sendMessage(nodeIds, SUNSHINE_WEATHER_PATH, data);
     }
-}
\ No newline at end of file
+}
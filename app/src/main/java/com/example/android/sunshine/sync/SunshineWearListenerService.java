@@ -0,0 +1,46 @@
+package com.example.android.sunshine.sync;
+
+import android.util.Log;
+import com.example.android.sunshine.common.WeatherPayload;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.WearableListenerService;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [SunshineWearListenerService] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: A service class that answers the weather requests of paired Android Wear devices,
+ * which ask when the weather they have cached is missing or stale. The requesting node gets the
+ * latest weather in the database right away, even if it was sent the same weather before; if
+ * there is none, a sync is started, which publishes it to every node when it finishes.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class SunshineWearListenerService extends WearableListenerService {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = SunshineWearListenerService.class.getSimpleName();
+
+    /** OVERRIDDEN METHODS _____________________________________________________________________ **/
+
+    // onMessageReceived(): Runs on a background thread of the service when a node sends a message.
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+
+        if (!SunshineSyncWear.SUNSHINE_WEATHER_REQUEST_PATH.equals(messageEvent.getPath())) {
+            super.onMessageReceived(messageEvent);
+            return;
+        }
+
+        Log.d(LOG_TAG, "onMessageReceived(): Weather requested by node " + messageEvent.getSourceNodeId());
+
+        SunshineSyncWear wearSync = new SunshineSyncWear(this);
+        WeatherPayload payload = wearSync.buildWeatherPayload();
+        if (payload == null) {
+            SunshineSyncAdapter.syncImmediately(this);
+            return;
+        }
+        WearWeatherPublisher.getInstance(this).sendTo(payload, messageEvent.getSourceNodeId());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hands the {@link SyncResultSnapshot} of a sync to everything that displays the weather.  The
+ * consumers run at the same time, each on its own thread, and {@link #dispatch} returns once they
+ * have all finished or the timeout has passed.  A consumer that fails doesn't keep the others
+ * from running.
+ *
+ * The last snapshot dispatched is kept for the services that the consumers start in this process,
+ * such as the widgets and Muzei, so that they don't have to query the provider again.
+ */
+public class SyncResultDispatcher {
+
+    private static final String LOG_TAG = SyncResultDispatcher.class.getSimpleName();
+
+    private static volatile SyncResultSnapshot sLatest;
+
+    /**
+     * Something that displays the weather of a sync.  Called on a worker thread.
+     */
+    public interface Consumer {
+        void onSyncResult(SyncResultSnapshot snapshot) throws Exception;
+    }
+
+    private final List<Consumer> mConsumers = new ArrayList<Consumer>();
+    private final long mTimeoutMillis;
+
+    /**
+     * @param timeoutMillis how long {@link #dispatch} waits for the consumers to finish.
+     */
+    public SyncResultDispatcher(long timeoutMillis) {
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    public SyncResultDispatcher addConsumer(Consumer consumer) {
+        mConsumers.add(consumer);
+        return this;
+    }
+
+    /**
+     * @return the last snapshot dispatched in this process, or null if there's none.
+     */
+    public static SyncResultSnapshot getLatest() {
+        return sLatest;
+    }
+
+    // Forgets the last snapshot, so that tests don't leave theirs to the rest of the process.
+    static void resetLatest() {
+        sLatest = null;
+    }
+
+    /**
+     * Runs every consumer with the snapshot, and waits for them to finish.
+     *
+     * @return the number of consumers that finished without an error.
+     */
+    public int dispatch(final SyncResultSnapshot snapshot) {
+        sLatest = snapshot;
+        if (mConsumers.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(mConsumers.size());
+        int completed = 0;
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(mConsumers.size());
+            for (final Consumer consumer : mConsumers) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        consumer.onSyncResult(snapshot);
+                        return null;
+                    }
+                }));
+            }
+
+            long deadline = SystemClock.elapsedRealtime() + mTimeoutMillis;
+            for (Future<Void> future : futures) {
+                try {
+                    long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                    future.get(remaining, TimeUnit.MILLISECONDS);
+                    completed++;
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "A sync result consumer failed", e.getCause());
+                } catch (TimeoutException e) {
+                    Log.e(LOG_TAG, "A sync result consumer timed out");
+                    future.cancel(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.SunshineSettings;
+import com.example.android.sunshine.common.WeatherPayload;
+import com.example.android.sunshine.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of what a sync stored for the preferred location: the forecast from today on
+ * and the settings it was read with.  It is read back from the provider once per sync and handed
+ * to the widgets, Muzei, the notification and the watch, so none of them has to query again.
+ */
+public final class SyncResultSnapshot {
+
+    public static final int MAX_DAYS = WeatherPayload.MAX_DAYS;
+
+    private static final String[] SNAPSHOT_PROJECTION = new String[] {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_SHORT_DESC = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_MIN_TEMP = 4;
+
+    /**
+     * One day of the stored forecast.  Temperatures are in Celsius, as stored.
+     */
+    public static final class Day {
+        private final long mDate;
+        private final int mWeatherId;
+        private final String mDescription;
+        private final double mHigh;
+        private final double mLow;
+
+        public Day(long date, int weatherId, String description, double high, double low) {
+            mDate = date;
+            mWeatherId = weatherId;
+            mDescription = description;
+            mHigh = high;
+            mLow = low;
+        }
+
+        public long getDate() {
+            return mDate;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+
+        public String getDescription() {
+            return mDescription;
+        }
+
+        public double getHigh() {
+            return mHigh;
+        }
+
+        public double getLow() {
+            return mLow;
+        }
+    }
+
+    private final SunshineSettings mSettings;
+    private final List<Day> mDays;
+
+    /**
+     * @param settings the settings the forecast was read with
+     * @param days     the forecast from today on; only the first {@link #MAX_DAYS} are kept
+     */
+    public SyncResultSnapshot(SunshineSettings settings, List<Day> days) {
+        if (days.isEmpty()) {
+            throw new IllegalArgumentException("A snapshot needs at least today's weather");
+        }
+        mSettings = settings;
+        mDays = Collections.unmodifiableList(
+                new ArrayList<Day>(days.subList(0, Math.min(days.size(), MAX_DAYS))));
+    }
+
+    /**
+     * Reads the forecast from today on for the preferred location in a single query.
+     *
+     * @return the snapshot, or null if there's no weather for today.
+     */
+    public static SyncResultSnapshot read(Context context) {
+        SunshineSettings settings = SunshineSettings.get(context);
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                settings.getLocationSetting(), System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(weatherUri, SNAPSHOT_PROJECTION,
+                null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            List<Day> days = new ArrayList<Day>();
+            while (days.size() < MAX_DAYS && cursor.moveToNext()) {
+                days.add(new Day(cursor.getLong(INDEX_DATE), cursor.getInt(INDEX_WEATHER_ID),
+                        cursor.getString(INDEX_SHORT_DESC), cursor.getDouble(INDEX_MAX_TEMP),
+                        cursor.getDouble(INDEX_MIN_TEMP)));
+            }
+            return days.isEmpty() ? null : new SyncResultSnapshot(settings, days);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the snapshot of the last sync in this process if it's still current, and otherwise
+     * reads a new one, so the services the sync starts don't query the provider again.
+     *
+     * @return the snapshot, or null if there's no weather for today.
+     */
+    public static SyncResultSnapshot getCurrent(Context context) {
+        SyncResultSnapshot latest = SyncResultDispatcher.getLatest();
+        if (latest != null
+                && latest.isCurrent(SunshineSettings.get(context), System.currentTimeMillis())) {
+            return latest;
+        }
+        return read(context);
+    }
+
+    /**
+     * @return the settings the forecast was read with, which give its location and units.
+     */
+    public SunshineSettings getSettings() {
+        return mSettings;
+    }
+
+    public String getLocationSetting() {
+        return mSettings.getLocationSetting();
+    }
+
+    public boolean isMetric() {
+        return mSettings.isMetric();
+    }
+
+    public List<Day> getDays() {
+        return mDays;
+    }
+
+    public Day getToday() {
+        return mDays.get(0);
+    }
+
+    /**
+     * @return whether the snapshot was read with the current settings and starts today, so it can
+     * be used instead of querying the provider.  Every settings change makes a new
+     * {@link SunshineSettings}, so a snapshot is never shown in units or for a location that
+     * have since changed.
+     */
+    public boolean isCurrent(SunshineSettings settings, long nowMillis) {
+        return mSettings == settings
+                && getToday().getDate() == WeatherContract.normalizeDate(nowMillis);
+    }
+
+    /**
+     * @return the forecast as the watch reads it, in the units it was read with.
+     */
+    public WeatherPayload toWeatherPayload(long timestamp) {
+        List<WeatherPayload.Day> days = new ArrayList<WeatherPayload.Day>(mDays.size());
+        for (Day day : mDays) {
+            days.add(new WeatherPayload.Day(day.mWeatherId, day.mHigh, day.mLow));
+        }
+        return new WeatherPayload(timestamp, mSettings.isMetric(), getToday().getDate(), days);
+    }
+}
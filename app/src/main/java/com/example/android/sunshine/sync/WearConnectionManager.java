@@ -0,0 +1,220 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WearConnectionManager] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Keeps a single long-lived GoogleApiClient connection to the Wearable API and a cache
+ * of the connected node IDs, which is kept current by peer connect and disconnect events. Messages
+ * are sent to every node at once and the acknowledgements collected afterwards, so that a sync
+ * costs one round trip instead of a connection handshake. The blocking methods must not be called
+ * on the main thread.
+ * -------------------------------------------------------------------------------------------------
+ */
+
+public class WearConnectionManager implements GoogleApiClient.ConnectionCallbacks,
+        NodeApi.NodeListener {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // INSTANCE VARIABLES
+    private static WearConnectionManager sInstance;
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = WearConnectionManager.class.getSimpleName();
+
+    // TIMEOUT VARIABLES
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+    private static final long REQUEST_TIMEOUT_SECONDS = 15;
+
+    // CONNECTION VARIABLES
+    private final GoogleApiClient mGoogleApiClient;
+
+    // NODE VARIABLES: mNodeIds is null while the connected nodes are unknown. mNodeGeneration is
+    // bumped by every peer event, so a node query that raced with one isn't cached.
+    private final Object mNodeLock = new Object();
+    private Set<String> mNodeIds;
+    private int mNodeGeneration;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    private WearConnectionManager(Context context) {
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .build();
+    }
+
+    // getInstance(): Returns the WearConnectionManager shared by the whole app.
+    public static synchronized WearConnectionManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearConnectionManager(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /** GOOGLE API CLIENT METHODS ______________________________________________________________ **/
+
+    // onConnected(): Runs when the client is connected. Peer events are only delivered while the
+    // client is connected, so the node cache starts over on every connection.
+    @Override
+    public void onConnected(Bundle bundle) {
+        Log.d(LOG_TAG, "onConnected(): Google API client connection established.");
+        forgetNodes();
+        Wearable.NodeApi.addListener(mGoogleApiClient, this);
+    }
+
+    // onConnectionSuspended(): Runs when the client connection is suspended. The client reconnects
+    // on its own; until then, the nodes are unknown.
+    @Override
+    public void onConnectionSuspended(int i) {
+        Log.d(LOG_TAG, "onConnectionSuspended(): Google API client connection was suspended.");
+        forgetNodes();
+    }
+
+    /** NODE LISTENER METHODS __________________________________________________________________ **/
+
+    @Override
+    public void onPeerConnected(Node peer) {
+        Log.d(LOG_TAG, "onPeerConnected(): Peer: " + peer);
+        synchronized (mNodeLock) {
+            mNodeGeneration++;
+            if (mNodeIds != null) {
+                mNodeIds.add(peer.getId());
+            }
+        }
+    }
+
+    @Override
+    public void onPeerDisconnected(Node peer) {
+        Log.d(LOG_TAG, "onPeerDisconnected(): Peer: " + peer);
+        synchronized (mNodeLock) {
+            mNodeGeneration++;
+            if (mNodeIds != null) {
+                mNodeIds.remove(peer.getId());
+            }
+        }
+    }
+
+    /** CONNECTION METHODS _____________________________________________________________________ **/
+
+    // connect(): Connects the client if it isn't already, blocking until it is. Returns whether the
+    // client is connected.
+    public synchronized boolean connect() {
+        if (mGoogleApiClient.isConnected()) {
+            return true;
+        }
+
+        Log.d(LOG_TAG, "connect(): Connecting to Google API client...");
+        ConnectionResult result = mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.e(LOG_TAG, "connect(): ERROR: Google API client connection failed: " + result.getErrorMessage());
+            return false;
+        }
+        return true;
+    }
+
+    // getGoogleApiClient(): Returns the shared client, for the Wearable APIs not wrapped here.
+    public GoogleApiClient getGoogleApiClient() {
+        return mGoogleApiClient;
+    }
+
+    // getConnectedNodes(): Returns the IDs of the connected nodes, from the cache if they're known.
+    public Set<String> getConnectedNodes() {
+        if (!connect()) {
+            return Collections.emptySet();
+        }
+
+        int generation;
+        synchronized (mNodeLock) {
+            if (mNodeIds != null) {
+                return new HashSet<>(mNodeIds);
+            }
+            generation = mNodeGeneration;
+        }
+
+        NodeApi.GetConnectedNodesResult result = Wearable.NodeApi.getConnectedNodes(mGoogleApiClient)
+                .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.getStatus().isSuccess()) {
+            Log.e(LOG_TAG, "getConnectedNodes(): ERROR: Unable to retrieve the connected nodes: " + result.getStatus());
+            return Collections.emptySet();
+        }
+
+        Set<String> nodeIds = new HashSet<>();
+        for (Node node : result.getNodes()) {
+            nodeIds.add(node.getId());
+        }
+
+        synchronized (mNodeLock) {
+            if (generation == mNodeGeneration) {
+                mNodeIds = new HashSet<>(nodeIds);
+            }
+        }
+        return nodeIds;
+    }
+
+    /** SEND METHODS ___________________________________________________________________________ **/
+
+    // sendMessage(): Sends the message to every connected node in parallel and waits for them all.
+    // Returns the IDs of the nodes that acknowledged it.
+    public Set<String> sendMessage(String path, byte[] data) {
+        return sendMessage(getConnectedNodes(), path, data);
+    }
+
+    // sendMessage(): Sends the message to the specified nodes in parallel and waits for them all.
+    // Returns the IDs of the nodes that acknowledged it.
+    public Set<String> sendMessage(Set<String> nodeIds, String path, byte[] data) {
+        if (nodeIds.isEmpty() || !connect()) {
+            return Collections.emptySet();
+        }
+
+        // Every send is started before any of them is waited on.
+        Map<String, PendingResult<MessageApi.SendMessageResult>> pendingResults = new HashMap<>();
+        for (String nodeId : nodeIds) {
+            pendingResults.put(nodeId, Wearable.MessageApi.sendMessage(mGoogleApiClient, nodeId, path, data));
+        }
+
+        Set<String> acknowledged = new HashSet<>();
+        for (Map.Entry<String, PendingResult<MessageApi.SendMessageResult>> entry : pendingResults.entrySet()) {
+            MessageApi.SendMessageResult result = entry.getValue().await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result.getStatus().isSuccess()) {
+                acknowledged.add(entry.getKey());
+            } else {
+                // The node has most likely gone away without an event; asks for the nodes again
+                // next time.
+                Log.e(LOG_TAG, "sendMessage(): ERROR: Node " + entry.getKey() + " didn't receive " + path + ": " + result.getStatus());
+                forgetNodes();
+            }
+        }
+
+        Log.d(LOG_TAG, "sendMessage(): " + path + " acknowledged by " + acknowledged.size() + " of " + nodeIds.size() + " nodes.");
+        return acknowledged;
+    }
+
+    /** NODE CACHE METHODS _____________________________________________________________________ **/
+
+    // forgetNodes(): Clears the node cache, so that the next request asks for the nodes again.
+    private void forgetNodes() {
+        synchronized (mNodeLock) {
+            mNodeGeneration++;
+            mNodeIds = null;
+        }
+    }
+}
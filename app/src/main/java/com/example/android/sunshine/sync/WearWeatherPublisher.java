@@ -0,0 +1,141 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+import com.example.android.sunshine.common.WeatherPayload;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WearWeatherPublisher] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Publishes the weather to the paired Android Wear devices only when it changes. The
+ * last payload each node acknowledged is remembered, and a node is only sent a message when the
+ * weather differs from it. The latest weather is also kept in a DataItem, which the Wearable API
+ * delivers once to a node that reconnects, instead of every message it missed. The methods block,
+ * and must not be called on the main thread.
+ * -------------------------------------------------------------------------------------------------
+ */
+
+public class WearWeatherPublisher {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // INSTANCE VARIABLES
+    private static WearWeatherPublisher sInstance;
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = WearWeatherPublisher.class.getSimpleName();
+
+    // PREFERENCE VARIABLES: The payloads are kept across process restarts, keyed by node ID, and
+    // the DataItem's under STATE_KEY.
+    private static final String PREFS_NAME = "wear_publisher";
+    private static final String NODE_KEY_PREFIX = "node_";
+    private static final String STATE_KEY = "state";
+    private final SharedPreferences mPrefs;
+
+    // REQUEST VARIABLES
+    private static final long REQUEST_TIMEOUT_SECONDS = 15;
+    private final Context mContext;
+    private final WearConnectionManager mConnectionManager;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    private WearWeatherPublisher(Context context) {
+        mContext = context;
+        mConnectionManager = WearConnectionManager.getInstance(context);
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // getInstance(): Returns the WearWeatherPublisher shared by the sync and the listener service.
+    public static synchronized WearWeatherPublisher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearWeatherPublisher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /** PUBLISH METHODS ________________________________________________________________________ **/
+
+    // publish(): Updates the DataItem and sends the payload to the connected nodes that haven't
+    // acknowledged the same weather yet. Returns the IDs of the nodes that were sent it.
+    public synchronized Set<String> publish(WeatherPayload payload) {
+        putState(payload);
+
+        Set<String> nodeIds = new HashSet<>();
+        for (String nodeId : mConnectionManager.getConnectedNodes()) {
+            if (!payload.hasSameWeather(getPayload(NODE_KEY_PREFIX + nodeId))) {
+                nodeIds.add(nodeId);
+            }
+        }
+
+        if (nodeIds.isEmpty()) {
+            Log.d(LOG_TAG, "publish(): Every node already has this weather.");
+            return nodeIds;
+        }
+        return send(payload, nodeIds);
+    }
+
+    // sendTo(): Sends the payload to the node whether or not it has already acknowledged the same
+    // weather, for nodes that asked for it.
+    public synchronized boolean sendTo(WeatherPayload payload, String nodeId) {
+        return !send(payload, Collections.singleton(nodeId)).isEmpty();
+    }
+
+    // send(): Sends the payload to the nodes and remembers it for the ones that acknowledged it.
+    private Set<String> send(WeatherPayload payload, Set<String> nodeIds) {
+        Set<String> acknowledged = new SunshineSyncWear(mContext).syncWearWeather(payload, nodeIds);
+        if (!acknowledged.isEmpty()) {
+            String encoded = Base64.encodeToString(payload.encode(), Base64.NO_WRAP);
+            SharedPreferences.Editor editor = mPrefs.edit();
+            for (String nodeId : acknowledged) {
+                editor.putString(NODE_KEY_PREFIX + nodeId, encoded);
+            }
+            editor.apply();
+        }
+        return acknowledged;
+    }
+
+    // putState(): Stores the payload in the weather DataItem, unless it already holds the same
+    // weather.
+    private void putState(WeatherPayload payload) {
+        if (payload.hasSameWeather(getPayload(STATE_KEY)) || !mConnectionManager.connect()) {
+            return;
+        }
+
+        byte[] data = payload.encode();
+        PutDataRequest request = PutDataRequest.create(SunshineSyncWear.SUNSHINE_WEATHER_PATH);
+        request.setData(data);
+        request.setUrgent();
+
+        DataApi.DataItemResult result = Wearable.DataApi.putDataItem(
+                mConnectionManager.getGoogleApiClient(), request)
+                .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (result.getStatus().isSuccess()) {
+            mPrefs.edit().putString(STATE_KEY, Base64.encodeToString(data, Base64.NO_WRAP)).apply();
+        } else {
+            Log.e(LOG_TAG, "putState(): ERROR: Unable to update the weather DataItem: " + result.getStatus());
+        }
+    }
+
+    // getPayload(): Returns the payload stored under the key, or null if there's none.
+    private WeatherPayload getPayload(String key) {
+        String encoded = mPrefs.getString(key, null);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return WeatherPayload.decode(Base64.decode(encoded, Base64.NO_WRAP));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentValues;
+import android.text.format.Time;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import com.example.android.sunshine.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns an OpenWeatherMap daily forecast response into weather rows ready for the provider.
+ *
+ * Two parsers are available.  {@link #parseJson(String)} is the original parser, which builds a
+ * full JSONObject tree out of the complete response string.  {@link #parseStream(InputStream)}
+ * pulls tokens straight off the connection with a {@link JsonReader}, so neither the response
+ * string nor the object tree is ever built.
+ */
+public class WeatherJsonParser {
+
+    // These are the names of the JSON objects that need to be extracted.
+
+    // Location information
+    static final String OWM_CITY = "city";
+    static final String OWM_CITY_NAME = "name";
+    static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    static final String OWM_LATITUDE = "lat";
+    static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    static final String OWM_LIST = "list";
+
+    static final String OWM_PRESSURE = "pressure";
+    static final String OWM_HUMIDITY = "humidity";
+    static final String OWM_WINDSPEED = "speed";
+    static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    static final String OWM_TEMPERATURE = "temp";
+    static final String OWM_MAX = "max";
+    static final String OWM_MIN = "min";
+
+    static final String OWM_WEATHER = "weather";
+    static final String OWM_DESCRIPTION = "main";
+    static final String OWM_WEATHER_ID = "id";
+
+    static final String OWM_MESSAGE_CODE = "cod";
+
+    // The fields every day must have, as bits of a mask, so that a day missing one is rejected
+    // like the JSONObject parser rejects it rather than stored without a NOT NULL column.
+    private static final int DAY_PRESSURE = 1;
+    private static final int DAY_HUMIDITY = 1 << 1;
+    private static final int DAY_WINDSPEED = 1 << 2;
+    private static final int DAY_WIND_DIRECTION = 1 << 3;
+    private static final int DAY_MAX = 1 << 4;
+    private static final int DAY_MIN = 1 << 5;
+    private static final int DAY_DESCRIPTION = 1 << 6;
+    private static final int DAY_WEATHER_ID = 1 << 7;
+    private static final int DAY_ALL = (1 << 8) - 1;
+
+    private static final String[] DAY_FIELD_NAMES = new String[] {
+            OWM_PRESSURE, OWM_HUMIDITY, OWM_WINDSPEED, OWM_WIND_DIRECTION,
+            OWM_TEMPERATURE + "." + OWM_MAX, OWM_TEMPERATURE + "." + OWM_MIN,
+            OWM_WEATHER + "." + OWM_DESCRIPTION, OWM_WEATHER + "." + OWM_WEATHER_ID
+    };
+
+    /**
+     * The parsed content of a forecast response.  The weather rows carry every column except
+     * {@link WeatherContract.WeatherEntry#COLUMN_LOC_KEY}, which is only known once the city has
+     * been added to the location table.
+     */
+    public static class Forecast {
+        public int errorCode = HttpURLConnection.HTTP_OK;
+        public String cityName;
+        public double cityLatitude;
+        public double cityLongitude;
+        public final List<ContentValues> days = new ArrayList<ContentValues>(14);
+
+        // The julian day of the first forecast entry, used to purge rows older than the forecast.
+        public int julianStartDay;
+    }
+
+    private WeatherJsonParser() {
+    }
+
+    /**
+     * Take the String representing the complete forecast in JSON Format and
+     * pull out the data we need to construct the weather rows.
+     *
+     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
+     * into an Object hierarchy for us.
+     */
+    public static Forecast parseJson(String forecastJsonStr) throws JSONException {
+        Forecast forecast = new Forecast();
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+
+        // do we have an error?
+        if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
+            forecast.errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+            if (forecast.errorCode != HttpURLConnection.HTTP_OK) {
+                return forecast;
+            }
+        }
+
+        JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
+
+        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+        forecast.cityName = cityJson.getString(OWM_CITY_NAME);
+
+        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
+        forecast.cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
+        forecast.cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+
+        DayClock clock = new DayClock();
+        forecast.julianStartDay = clock.julianStartDay;
+
+        for(int i = 0; i < weatherArray.length(); i++) {
+            // Get the JSON object representing the day
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+
+            // Description is in a child array called "weather", which is 1 element long.
+            // That element also contains a weather code.
+            JSONObject weatherObject =
+                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
+
+            // Temperatures are in a child object called "temp".  Try not to name variables
+            // "temp" when working with temperature.  It confuses everybody.
+            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
+
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, clock.dateForDay(i));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, dayForecast.getInt(OWM_HUMIDITY));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, dayForecast.getDouble(OWM_PRESSURE));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, dayForecast.getDouble(OWM_WINDSPEED));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, dayForecast.getDouble(OWM_WIND_DIRECTION));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, temperatureObject.getDouble(OWM_MAX));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, temperatureObject.getDouble(OWM_MIN));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, weatherObject.getString(OWM_DESCRIPTION));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherObject.getInt(OWM_WEATHER_ID));
+
+            forecast.days.add(weatherValues);
+        }
+        return forecast;
+    }
+
+    /**
+     * Pulls the forecast straight off the given stream, one token at a time.  The stream is
+     * consumed but not closed.
+     *
+     * @throws IOException if the stream fails or ends early.
+     * @throws JSONException if the response is not a well-formed forecast.
+     */
+    public static Forecast parseStream(InputStream inputStream) throws IOException, JSONException {
+        Forecast forecast = new Forecast();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+        boolean hasCity = false;
+        boolean hasList = false;
+        String missingField = null;
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_MESSAGE_CODE.equals(name)) {
+                    // Depending on the endpoint, OWM sends the code as a number or as a string.
+                    forecast.errorCode = nextInt(reader);
+                    if (forecast.errorCode != HttpURLConnection.HTTP_OK) {
+                        return forecast;
+                    }
+                } else if (OWM_CITY.equals(name)) {
+                    String missing = readCity(reader, forecast);
+                    if (missingField == null) {
+                        missingField = missing;
+                    }
+                    hasCity = true;
+                } else if (OWM_LIST.equals(name)) {
+                    String missing = readDays(reader, forecast);
+                    if (missingField == null) {
+                        missingField = missing;
+                    }
+                    hasList = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            // Report bad payloads the same way the JSONObject parser does, so that they are
+            // not mistaken for network failures.
+            throw new JSONException("Malformed forecast: " + e.getMessage());
+        }
+
+        if (!hasCity || !hasList) {
+            throw new JSONException("Malformed forecast: missing " + (hasCity ? OWM_LIST : OWM_CITY));
+        }
+        // Checked only once the whole response is read, since an error code that comes after the
+        // forecast takes precedence, as it does for the JSONObject parser.
+        if (missingField != null) {
+            throw new JSONException("Malformed forecast: missing " + missingField);
+        }
+        return forecast;
+    }
+
+    /**
+     * @return the first required city field that is missing, or null if there's none.
+     */
+    private static String readCity(JsonReader reader, Forecast forecast) throws IOException {
+        boolean hasName = false;
+        boolean hasLatitude = false;
+        boolean hasLongitude = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_CITY_NAME.equals(name)) {
+                forecast.cityName = reader.nextString();
+                hasName = true;
+            } else if (OWM_COORD.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String coord = reader.nextName();
+                    if (OWM_LATITUDE.equals(coord)) {
+                        forecast.cityLatitude = reader.nextDouble();
+                        hasLatitude = true;
+                    } else if (OWM_LONGITUDE.equals(coord)) {
+                        forecast.cityLongitude = reader.nextDouble();
+                        hasLongitude = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasName) {
+            return OWM_CITY + "." + OWM_CITY_NAME;
+        } else if (!hasLatitude) {
+            return OWM_CITY + "." + OWM_COORD + "." + OWM_LATITUDE;
+        } else if (!hasLongitude) {
+            return OWM_CITY + "." + OWM_COORD + "." + OWM_LONGITUDE;
+        }
+        return null;
+    }
+
+    /**
+     * @return the first required field missing from a day, or null if every day has them all.
+     */
+    private static String readDays(JsonReader reader, Forecast forecast) throws IOException {
+        DayClock clock = new DayClock();
+        forecast.julianStartDay = clock.julianStartDay;
+        String missingField = null;
+
+        reader.beginArray();
+        for (int i = 0; reader.hasNext(); i++) {
+            int fields = 0;
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, clock.dateForDay(i));
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_PRESSURE.equals(name)) {
+                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, reader.nextDouble());
+                    fields |= DAY_PRESSURE;
+                } else if (OWM_HUMIDITY.equals(name)) {
+                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, reader.nextInt());
+                    fields |= DAY_HUMIDITY;
+                } else if (OWM_WINDSPEED.equals(name)) {
+                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, reader.nextDouble());
+                    fields |= DAY_WINDSPEED;
+                } else if (OWM_WIND_DIRECTION.equals(name)) {
+                    weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, reader.nextDouble());
+                    fields |= DAY_WIND_DIRECTION;
+                } else if (OWM_TEMPERATURE.equals(name)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String temperature = reader.nextName();
+                        if (OWM_MAX.equals(temperature)) {
+                            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, reader.nextDouble());
+                            fields |= DAY_MAX;
+                        } else if (OWM_MIN.equals(temperature)) {
+                            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, reader.nextDouble());
+                            fields |= DAY_MIN;
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else if (OWM_WEATHER.equals(name)) {
+                    // Only the first element of the "weather" array is used.
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String field = reader.nextName();
+                            if (OWM_DESCRIPTION.equals(field)) {
+                                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, reader.nextString());
+                                fields |= DAY_DESCRIPTION;
+                            } else if (OWM_WEATHER_ID.equals(field)) {
+                                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, reader.nextInt());
+                                fields |= DAY_WEATHER_ID;
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (fields != DAY_ALL && missingField == null) {
+                missingField = DAY_FIELD_NAMES[Integer.numberOfTrailingZeros(~fields & DAY_ALL)];
+            }
+            forecast.days.add(weatherValues);
+        }
+        reader.endArray();
+        return missingField;
+    }
+
+    private static int nextInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return Integer.parseInt(reader.nextString());
+        }
+        return reader.nextInt();
+    }
+
+    /**
+     * OWM returns daily forecasts based upon the local time of the city that is being
+     * asked for, which means that we need to know the GMT offset to translate this data
+     * properly.
+     *
+     * Since this data is also sent in-order and the first day is always the
+     * current day, we're going to take advantage of that to get a nice
+     * normalized UTC date for all of our weather.
+     */
+    static class DayClock {
+        final int julianStartDay;
+        private final Time mDayTime;
+
+        DayClock() {
+            Time dayTime = new Time();
+            dayTime.setToNow();
+
+            // we start at the day returned by local time. Otherwise this is a mess.
+            julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+            // now we work exclusively in UTC
+            mDayTime = new Time();
+        }
+
+        long dateForDay(int day) {
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            return mDayTime.setJulianDay(julianStartDay + day);
+        }
+    }
+}
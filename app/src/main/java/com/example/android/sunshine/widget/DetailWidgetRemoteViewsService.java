@@ -14,8 +14,10 @@ import android.widget.RemoteViewsService;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.target.Target;
+import com.example.android.SunshineSettings;
 import com.example.android.sunshine.R;
 import com.example.android.Utility;
+import com.example.android.sunshine.art.ArtCache;
 import com.example.android.sunshine.data.WeatherContract;
 
 import java.util.concurrent.ExecutionException;
@@ -98,6 +100,14 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
                 Bitmap weatherArtImage = null;
                 if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
+                    // The prefetched art is on the device; Glide only fetches what isn't yet.
+                    int artSize = getResources().getDimensionPixelSize(R.dimen.list_icon);
+                    weatherArtImage = ArtCache.getInstance(DetailWidgetRemoteViewsService.this).get(
+                            SunshineSettings.get(DetailWidgetRemoteViewsService.this).getArtPack(),
+                            weatherId, artSize, artSize);
+                }
+                if ( weatherArtImage == null
+                        && !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
                     String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
                             DetailWidgetRemoteViewsService.this, weatherId);
                     try {
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * Formats temperatures stored in Celsius as whole degrees in the user's units followed by a suffix,
+ * the same way String.format("%1.0f") does but without parsing a format string each time.  The
+ * unit conversion, the digits and the suffix are fixed when the formatter is built; the strings
+ * for every temperature from -60 to 60 degrees are kept once they've been made, and anything can
+ * be appended to a reused StringBuilder without allocating.
+ *
+ * Instances can be shared between threads.
+ */
+public final class TemperatureFormatter {
+
+    public static final String DEGREE_SUFFIX = "\u00B0";
+
+    // The temperatures worth keeping a string for.
+    private static final int CACHED_MIN = -60;
+    private static final int CACHED_MAX = 60;
+
+    // Enough for a sign and every digit of a long.
+    private static final int MAX_DIGITS = 20;
+
+    private final boolean mMetric;
+    private final char mZeroDigit;
+    private final String mSuffix;
+    private final String[] mCache = new String[CACHED_MAX - CACHED_MIN + 1];
+
+    /**
+     * @param metric    whether to show Celsius rather than Fahrenheit
+     * @param zeroDigit the locale's digit zero, which the other digits follow
+     * @param suffix    appended to every temperature
+     */
+    public TemperatureFormatter(boolean metric, char zeroDigit, String suffix) {
+        mMetric = metric;
+        mZeroDigit = zeroDigit;
+        mSuffix = suffix;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public char getZeroDigit() {
+        return mZeroDigit;
+    }
+
+    /**
+     * @return the temperature in whole degrees of the formatter's units.
+     */
+    public long toDisplayDegrees(double celsius) {
+        double degrees = mMetric ? celsius : (celsius * 1.8) + 32;
+        return round(degrees);
+    }
+
+    public String format(double celsius) {
+        double degrees = mMetric ? celsius : (celsius * 1.8) + 32;
+        long rounded = round(degrees);
+
+        // String.format keeps the sign of anything that rounds to zero from below.
+        boolean negativeZero = rounded == 0 && isNegative(degrees);
+        if (negativeZero || rounded < CACHED_MIN || rounded > CACHED_MAX) {
+            char[] chars = new char[MAX_DIGITS];
+            int start = render(rounded, negativeZero, chars);
+            return new String(chars, start, MAX_DIGITS - start) + mSuffix;
+        }
+
+        int index = (int) rounded - CACHED_MIN;
+        String formatted = mCache[index];
+        if (formatted == null) {
+            char[] chars = new char[MAX_DIGITS];
+            int start = render(rounded, false, chars);
+            // Strings are immutable, so a racing thread at worst builds the same one twice.
+            formatted = new String(chars, start, MAX_DIGITS - start) + mSuffix;
+            mCache[index] = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Appends the formatted temperature to the builder, without allocating once it has grown
+     * big enough.
+     */
+    public StringBuilder appendTo(StringBuilder builder, double celsius) {
+        double degrees = mMetric ? celsius : (celsius * 1.8) + 32;
+        long rounded = round(degrees);
+        if (rounded < 0 || (rounded == 0 && isNegative(degrees))) {
+            builder.append('-');
+        }
+
+        long magnitude = Math.abs(rounded);
+        long divisor = 1;
+        while (magnitude / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            builder.append((char) (mZeroDigit + (magnitude / divisor) % 10));
+        }
+        return builder.append(mSuffix);
+    }
+
+    /*
+        Rounds half away from zero, like String.format.  Math.round would take -2.5 to -2, and
+        adding 0.5 before flooring would take 0.49999999999999994 to 1.
+     */
+    private static long round(double value) {
+        double magnitude = Math.abs(value);
+        long whole = (long) magnitude;
+        if (magnitude - whole >= 0.5) {
+            whole++;
+        }
+        return value < 0 ? -whole : whole;
+    }
+
+    // True for -0.0 as well.
+    private static boolean isNegative(double value) {
+        return Double.doubleToRawLongBits(value) < 0;
+    }
+
+    // Writes the digits to the end of chars and returns where they start.
+    private int render(long rounded, boolean negative, char[] chars) {
+        long magnitude = Math.abs(rounded);
+        int position = chars.length;
+        do {
+            chars[--position] = (char) (mZeroDigit + magnitude % 10);
+            magnitude /= 10;
+        } while (magnitude > 0);
+        if (negative || rounded < 0) {
+            chars[--position] = '-';
+        }
+        return position;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps OpenWeatherMap condition codes to the handful of conditions Sunshine has artwork for, with
+ * a single array lookup and no allocation.
+ *
+ * Resource ids differ between the phone and the watch, so each of them keeps its own small array
+ * of icons and art indexed by the CONDITION_ constants; the art pack slugs and the Muzei image
+ * URLs are the same everywhere and live here.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditionTable {
+
+    public static final int CONDITION_UNKNOWN = -1;
+    public static final int CONDITION_STORM = 0;
+    public static final int CONDITION_LIGHT_RAIN = 1;
+    public static final int CONDITION_RAIN = 2;
+    public static final int CONDITION_SNOW = 3;
+    public static final int CONDITION_FOG = 4;
+    // Drawn as a storm, but with its own Muzei image.
+    public static final int CONDITION_TORNADO = 5;
+    public static final int CONDITION_CLEAR = 6;
+    public static final int CONDITION_LIGHT_CLOUDS = 7;
+    public static final int CONDITION_CLOUDS = 8;
+    public static final int CONDITION_COUNT = 9;
+
+    // The range of codes OpenWeatherMap defines.
+    public static final int MIN_CODE = 200;
+    public static final int MAX_CODE = 962;
+
+    // The art pack file names, indexed by condition.
+    private static final String[] ART_SLUGS = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "storm",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    // The Muzei images, indexed by condition.
+    private static final String[] IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+
+    // Every picture of an art pack once, in condition order.
+    private static final List<String> DISTINCT_ART_SLUGS;
+
+    // The condition of every code from MIN_CODE to MAX_CODE.
+    private static final byte[] CONDITIONS = new byte[MAX_CODE - MIN_CODE + 1];
+
+    static {
+        for (int i = 0; i < CONDITIONS.length; i++) {
+            CONDITIONS[i] = CONDITION_UNKNOWN;
+        }
+        fill(200, 232, CONDITION_STORM);
+        fill(300, 321, CONDITION_LIGHT_RAIN);
+        fill(500, 504, CONDITION_RAIN);
+        fill(511, 511, CONDITION_SNOW);
+        fill(520, 531, CONDITION_RAIN);
+        fill(600, 622, CONDITION_SNOW);
+        fill(701, 761, CONDITION_FOG);
+        fill(781, 781, CONDITION_TORNADO);
+        fill(800, 800, CONDITION_CLEAR);
+        fill(801, 801, CONDITION_LIGHT_CLOUDS);
+        fill(802, 804, CONDITION_CLOUDS);
+
+        List<String> slugs = new ArrayList<String>(ART_SLUGS.length);
+        for (String slug : ART_SLUGS) {
+            if (!slugs.contains(slug)) {
+                slugs.add(slug);
+            }
+        }
+        DISTINCT_ART_SLUGS = Collections.unmodifiableList(slugs);
+    }
+
+    private WeatherConditionTable() {
+    }
+
+    private static void fill(int firstCode, int lastCode, int condition) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            CONDITIONS[code - MIN_CODE] = (byte) condition;
+        }
+    }
+
+    /**
+     * @return one of the CONDITION_ constants, or {@link #CONDITION_UNKNOWN} for a code Sunshine
+     * has no artwork for.
+     */
+    public static int getCondition(int weatherId) {
+        if (weatherId < MIN_CODE || weatherId > MAX_CODE) {
+            return CONDITION_UNKNOWN;
+        }
+        return CONDITIONS[weatherId - MIN_CODE];
+    }
+
+    /**
+     * @return the name of the code's picture in an art pack, or null if there's none.
+     */
+    public static String getArtSlug(int weatherId) {
+        int condition = getCondition(weatherId);
+        return condition == CONDITION_UNKNOWN ? null : ART_SLUGS[condition];
+    }
+
+    /**
+     * @return the names of all the pictures in an art pack, each once.
+     */
+    public static List<String> getArtSlugs() {
+        return DISTINCT_ART_SLUGS;
+    }
+
+    /**
+     * @return the URL of a photograph of the code's weather, or null if there's none.
+     */
+    public static String getImageUrl(int weatherId) {
+        int condition = getCondition(weatherId);
+        return condition == CONDITION_UNKNOWN ? null : IMAGE_URLS[condition];
+    }
+}
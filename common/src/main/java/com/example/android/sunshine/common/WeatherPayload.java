@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The weather the phone sends to the watch, as raw numbers in a small versioned binary format so
+ * that the watch can read it without any string parsing and format it in its own locale.
+ *
+ * Version 1 is laid out big-endian as:
+ * <pre>
+ *   byte   version
+ *   byte   flags, bit 0 set when the user wants metric units
+ *   long   when the phone built the payload, in epoch millis
+ *   long   the date of the first day, as stored in the weather table
+ *   byte   number of days, today first
+ *   per day:
+ *     short  weather condition code
+ *     short  high, in hundredths of a degree Celsius
+ *     short  low, in hundredths of a degree Celsius
+ * </pre>
+ * Later versions may only append to this, so a reader skips whatever follows the fields it knows.
+ */
+public final class WeatherPayload {
+
+    public static final int VERSION = 1;
+
+    public static final int MAX_DAYS = 14;
+
+    private static final int FLAG_METRIC = 1;
+
+    private static final int HEADER_SIZE = 1 + 1 + 8 + 8 + 1;
+    private static final int DAY_SIZE = 2 + 2 + 2;
+
+    /**
+     * One day of the forecast.  Temperatures are in Celsius, kept to a hundredth of a degree,
+     * which is as precise as the weather service gets.
+     */
+    public static final class Day {
+        private final int mWeatherId;
+        private final double mHigh;
+        private final double mLow;
+
+        public Day(int weatherId, double high, double low) {
+            mWeatherId = weatherId;
+            mHigh = toHundredths(high) / 100.0;
+            mLow = toHundredths(low) / 100.0;
+        }
+
+        public int getWeatherId() {
+            return mWeatherId;
+        }
+
+        public double getHigh() {
+            return mHigh;
+        }
+
+        public double getLow() {
+            return mLow;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Day)) {
+                return false;
+            }
+            Day other = (Day) o;
+            return mWeatherId == other.mWeatherId && mHigh == other.mHigh && mLow == other.mLow;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(mHigh) * 31 + Double.doubleToLongBits(mLow);
+            return mWeatherId * 31 + (int) (bits ^ (bits >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return mWeatherId + " " + mHigh + "/" + mLow;
+        }
+    }
+
+    private final long mTimestamp;
+    private final boolean mMetric;
+    private final long mFirstDate;
+    private final List<Day> mDays;
+
+    /**
+     * @param timestamp when the weather was read, in epoch millis
+     * @param metric    whether the user wants metric units
+     * @param firstDate the date of the first day
+     * @param days      the forecast from today on; only the first {@link #MAX_DAYS} are kept
+     */
+    public WeatherPayload(long timestamp, boolean metric, long firstDate, List<Day> days) {
+        if (days.isEmpty()) {
+            throw new IllegalArgumentException("A payload needs at least today's weather");
+        }
+        mTimestamp = timestamp;
+        mMetric = metric;
+        mFirstDate = firstDate;
+        mDays = Collections.unmodifiableList(
+                new ArrayList<Day>(days.subList(0, Math.min(days.size(), MAX_DAYS))));
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public long getFirstDate() {
+        return mFirstDate;
+    }
+
+    public List<Day> getDays() {
+        return mDays;
+    }
+
+    public Day getToday() {
+        return mDays.get(0);
+    }
+
+    /**
+     * @return whether the other payload shows the same weather in the same units, whenever it
+     * was built.
+     */
+    public boolean hasSameWeather(WeatherPayload other) {
+        return other != null && mMetric == other.mMetric && mFirstDate == other.mFirstDate
+                && mDays.equals(other.mDays);
+    }
+
+    public byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + mDays.size() * DAY_SIZE);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (mMetric ? FLAG_METRIC : 0));
+        buffer.putLong(mTimestamp);
+        buffer.putLong(mFirstDate);
+        buffer.put((byte) mDays.size());
+        for (Day day : mDays) {
+            buffer.putShort((short) day.mWeatherId);
+            buffer.putShort(toHundredths(day.mHigh));
+            buffer.putShort(toHundredths(day.mLow));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data isn't a payload this version can read.
+     */
+    public static WeatherPayload decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Empty weather payload");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported weather payload version " + version);
+        }
+
+        try {
+            int flags = buffer.get();
+            long timestamp = buffer.getLong();
+            long firstDate = buffer.getLong();
+            int dayCount = buffer.get() & 0xff;
+            if (dayCount == 0) {
+                throw new IllegalArgumentException("Weather payload has no days");
+            }
+
+            List<Day> days = new ArrayList<Day>(dayCount);
+            for (int i = 0; i < dayCount; i++) {
+                int weatherId = buffer.getShort();
+                double high = buffer.getShort() / 100.0;
+                double low = buffer.getShort() / 100.0;
+                days.add(new Day(weatherId, high, low));
+            }
+            return new WeatherPayload(timestamp, (flags & FLAG_METRIC) != 0, firstDate, days);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated weather payload", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WeatherPayload{" + (mMetric ? "metric" : "imperial") + ", timestamp=" + mTimestamp
+                + ", firstDate=" + mFirstDate + ", days=" + mDays + "}";
+    }
+
+    // Rounds half away from zero, and clamps to what a short holds.
+    private static short toHundredths(double celsius) {
+        double hundredths = celsius * 100;
+        long rounded = (long) (Math.abs(hundredths) + 0.5);
+        rounded = Math.min(rounded, Short.MAX_VALUE);
+        return (short) (hundredths < 0 ? -rounded : rounded);
+    }
+}
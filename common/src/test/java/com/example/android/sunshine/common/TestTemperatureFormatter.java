@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTemperatureFormatter {
+
+    private static final String FORMAT = "%1.0f" + TemperatureFormatter.DEGREE_SUFFIX;
+
+    private static final int BENCHMARK_WARMUP_PASSES = 200;
+    private static final int BENCHMARK_PASSES = 2000;
+
+    // Every tenth and every half degree comes out the way String.format had it, in both units.
+    @Test
+    public void testMatchesStringFormat() {
+        TemperatureFormatter celsius = new TemperatureFormatter(true, '0', TemperatureFormatter.DEGREE_SUFFIX);
+        TemperatureFormatter fahrenheit = new TemperatureFormatter(false, '0', TemperatureFormatter.DEGREE_SUFFIX);
+        StringBuilder builder = new StringBuilder();
+        for (int tenths = -1500; tenths <= 1500; tenths++) {
+            double[] temperatures = {tenths / 10.0, tenths / 2.0};
+            for (double temperature : temperatures) {
+                String expected = String.format(Locale.US, FORMAT, temperature);
+                assertEquals("Celsius " + temperature, expected, celsius.format(temperature));
+                builder.setLength(0);
+                assertEquals("Celsius " + temperature, expected,
+                        celsius.appendTo(builder, temperature).toString());
+
+                expected = String.format(Locale.US, FORMAT, (temperature * 1.8) + 32);
+                assertEquals("Fahrenheit " + temperature, expected, fahrenheit.format(temperature));
+                builder.setLength(0);
+                assertEquals("Fahrenheit " + temperature, expected,
+                        fahrenheit.appendTo(builder, temperature).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundingEdges() {
+        TemperatureFormatter formatter = new TemperatureFormatter(true, '0', TemperatureFormatter.DEGREE_SUFFIX);
+        double[] temperatures = {0.49999999999999994, -0.49999999999999994, -0.0, 0.5, -0.5, 2.5,
+                -2.5, 1e6, -1e6};
+        for (double temperature : temperatures) {
+            assertEquals("Temperature " + temperature, String.format(Locale.US, FORMAT, temperature),
+                    formatter.format(temperature));
+        }
+    }
+
+    @Test
+    public void testLocalizedDigits() {
+        Locale arabic = new Locale("ar", "EG");
+        char zeroDigit = DecimalFormatSymbols.getInstance(arabic).getZeroDigit();
+        TemperatureFormatter formatter = new TemperatureFormatter(true, zeroDigit, TemperatureFormatter.DEGREE_SUFFIX);
+        for (int degrees = -80; degrees <= 80; degrees++) {
+            assertEquals(String.format(arabic, FORMAT, (double) degrees), formatter.format(degrees));
+        }
+    }
+
+    @Test
+    public void testCommonRangeIsCached() {
+        TemperatureFormatter formatter = new TemperatureFormatter(true, '0', TemperatureFormatter.DEGREE_SUFFIX);
+        assertSame(formatter.format(21.2), formatter.format(20.8));
+        assertSame(formatter.format(-60), formatter.format(-59.5));
+    }
+
+    // A forecast's worth of highs and lows formats faster than with String.format.
+    @Test
+    public void testBenchmarkFormat() {
+        TemperatureFormatter formatter = new TemperatureFormatter(false, '0', TemperatureFormatter.DEGREE_SUFFIX);
+        StringBuilder builder = new StringBuilder();
+        long sink = 0;
+        for (int pass = 0; pass < BENCHMARK_WARMUP_PASSES; pass++) {
+            sink += formatAll(formatter) + appendAll(formatter, builder) + stringFormatAll();
+        }
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            sink += formatAll(formatter);
+        }
+        long formatNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            sink += appendAll(formatter, builder);
+        }
+        long appendNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            sink += stringFormatAll();
+        }
+        long stringFormatNanos = System.nanoTime() - start;
+
+        int temperatures = BENCHMARK_PASSES * 201;
+        String timings = String.format(
+                "Per temperature: format %.2f ns, appendTo %.2f ns, String.format %.2f ns (%d)",
+                (double) formatNanos / temperatures, (double) appendNanos / temperatures,
+                (double) stringFormatNanos / temperatures, sink);
+        assertTrue(timings, formatNanos < stringFormatNanos);
+        assertTrue(timings, appendNanos < stringFormatNanos);
+    }
+
+    private static long formatAll(TemperatureFormatter formatter) {
+        long sum = 0;
+        for (int tenths = -1000; tenths <= 1000; tenths += 10) {
+            sum += formatter.format(tenths / 10.0 + 0.3).length();
+        }
+        return sum;
+    }
+
+    private static long appendAll(TemperatureFormatter formatter, StringBuilder builder) {
+        long sum = 0;
+        for (int tenths = -1000; tenths <= 1000; tenths += 10) {
+            builder.setLength(0);
+            sum += formatter.appendTo(builder, tenths / 10.0 + 0.3).length();
+        }
+        return sum;
+    }
+
+    // What Utility.formatTemperature did before.
+    private static long stringFormatAll() {
+        long sum = 0;
+        for (int tenths = -1000; tenths <= 1000; tenths += 10) {
+            double temperature = tenths / 10.0 + 0.3;
+            sum += String.format(FORMAT, (temperature * 1.8) + 32).length();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestWeatherConditionTable {
+
+    private static final int BENCHMARK_WARMUP_PASSES = 200;
+    private static final int BENCHMARK_PASSES = 2000;
+
+    // Every code maps to the same art as the range checks the table replaced.
+    @Test
+    public void testMatchesRangeChecks() {
+        for (int code = 0; code < 1100; code++) {
+            assertEquals("Art slug for " + code, rangeCheckArtSlug(code),
+                    WeatherConditionTable.getArtSlug(code));
+        }
+    }
+
+    // Every code with art uses one of the pack's pictures, and every picture is used.
+    @Test
+    public void testArtSlugs() {
+        List<String> slugs = WeatherConditionTable.getArtSlugs();
+        assertEquals(new HashSet<String>(slugs).size(), slugs.size());
+
+        Set<String> used = new HashSet<String>();
+        for (int code = WeatherConditionTable.MIN_CODE; code <= WeatherConditionTable.MAX_CODE; code++) {
+            String slug = WeatherConditionTable.getArtSlug(code);
+            if (slug != null) {
+                assertTrue("Art slug for " + code, slugs.contains(slug));
+                used.add(slug);
+            }
+        }
+        assertEquals(new HashSet<String>(slugs), used);
+    }
+
+    @Test
+    public void testImageUrls() {
+        assertTrue(WeatherConditionTable.getImageUrl(781).contains("Raised_dust"));
+        assertTrue(WeatherConditionTable.getImageUrl(761).contains("fog"));
+        assertTrue(WeatherConditionTable.getImageUrl(211).contains("Thunderstorm"));
+        assertNull(WeatherConditionTable.getImageUrl(900));
+    }
+
+    @Test
+    public void testUnknownCodes() {
+        assertEquals(WeatherConditionTable.CONDITION_UNKNOWN, WeatherConditionTable.getCondition(-1));
+        assertEquals(WeatherConditionTable.CONDITION_UNKNOWN, WeatherConditionTable.getCondition(199));
+        assertEquals(WeatherConditionTable.CONDITION_UNKNOWN, WeatherConditionTable.getCondition(400));
+        assertEquals(WeatherConditionTable.CONDITION_UNKNOWN, WeatherConditionTable.getCondition(962));
+        assertEquals(WeatherConditionTable.CONDITION_UNKNOWN, WeatherConditionTable.getCondition(963));
+    }
+
+    // A lookup of every code costs about what the range checks it replaced did.  The two are within
+    // timer noise of each other, so the bound only catches the table getting markedly slower.
+    @Test
+    public void testBenchmarkLookup() {
+        long sink = 0;
+        for (int pass = 0; pass < BENCHMARK_WARMUP_PASSES; pass++) {
+            sink += lookupAll() + rangeCheckAll();
+        }
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            sink += lookupAll();
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            sink += rangeCheckAll();
+        }
+        long rangeCheckNanos = System.nanoTime() - start;
+
+        int lookups = BENCHMARK_PASSES * (WeatherConditionTable.MAX_CODE - WeatherConditionTable.MIN_CODE + 1);
+        String timings = String.format("Per lookup: table %.2f ns, range checks %.2f ns (%d)",
+                (double) tableNanos / lookups, (double) rangeCheckNanos / lookups, sink);
+        assertTrue(timings, tableNanos < 2 * rangeCheckNanos);
+    }
+
+    private static long lookupAll() {
+        long sum = 0;
+        for (int code = WeatherConditionTable.MIN_CODE; code <= WeatherConditionTable.MAX_CODE; code++) {
+            sum += WeatherConditionTable.getCondition(code);
+        }
+        return sum;
+    }
+
+    private static long rangeCheckAll() {
+        long sum = 0;
+        for (int code = WeatherConditionTable.MIN_CODE; code <= WeatherConditionTable.MAX_CODE; code++) {
+            String slug = rangeCheckArtSlug(code);
+            sum += slug == null ? -1 : slug.length();
+        }
+        return sum;
+    }
+
+    // The chain Utility.getArtUrlForWeatherCondition used before.
+    private static String rangeCheckArtSlug(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+}
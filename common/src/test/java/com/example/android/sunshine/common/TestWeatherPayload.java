@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestWeatherPayload {
+
+    private static final long TIMESTAMP = 1465430400123L;
+    private static final long FIRST_DATE = 1465430400000L;
+
+    @Test
+    public void testRoundTrip() {
+        WeatherPayload payload = new WeatherPayload(TIMESTAMP, false, FIRST_DATE, Arrays.asList(
+                new WeatherPayload.Day(800, 21.37, 9.04),
+                new WeatherPayload.Day(502, -3.25, -17.5),
+                new WeatherPayload.Day(962, 0, -0.004)));
+
+        WeatherPayload decoded = WeatherPayload.decode(payload.encode());
+        assertEquals(TIMESTAMP, decoded.getTimestamp());
+        assertEquals(FIRST_DATE, decoded.getFirstDate());
+        assertFalse(decoded.isMetric());
+        assertEquals(payload.getDays(), decoded.getDays());
+        assertTrue(payload.hasSameWeather(decoded));
+
+        assertEquals(800, decoded.getToday().getWeatherId());
+        assertEquals(21.37, decoded.getToday().getHigh(), 0);
+        assertEquals(9.04, decoded.getToday().getLow(), 0);
+        assertEquals(-17.5, decoded.getDays().get(1).getLow(), 0);
+    }
+
+    // Today's weather takes 25 bytes and each further day six more, whatever the units, locale or
+    // temperatures.
+    @Test
+    public void testSize() {
+        WeatherPayload today = new WeatherPayload(TIMESTAMP, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(800, 21.37, 9.04)));
+        assertEquals(25, today.encode().length);
+
+        List<WeatherPayload.Day> days = new ArrayList<WeatherPayload.Day>();
+        for (int i = 0; i < 20; i++) {
+            days.add(new WeatherPayload.Day(800 + i % 5, 20 + i, 10 - i));
+        }
+        WeatherPayload forecast = new WeatherPayload(TIMESTAMP, true, FIRST_DATE, days);
+        assertEquals(WeatherPayload.MAX_DAYS, forecast.getDays().size());
+        assertEquals(25 + 6 * (WeatherPayload.MAX_DAYS - 1), forecast.encode().length);
+    }
+
+    @Test
+    public void testHasSameWeatherIgnoresTimestamp() {
+        WeatherPayload first = new WeatherPayload(TIMESTAMP, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(800, 21.37, 9.04)));
+        WeatherPayload later = new WeatherPayload(TIMESTAMP + 1000, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(800, 21.368, 9.041)));
+        WeatherPayload imperial = new WeatherPayload(TIMESTAMP, false, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(800, 21.37, 9.04)));
+        WeatherPayload warmer = new WeatherPayload(TIMESTAMP, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(800, 22, 9.04)));
+
+        assertTrue(first.hasSameWeather(later));
+        assertFalse(first.hasSameWeather(imperial));
+        assertFalse(first.hasSameWeather(warmer));
+        assertFalse(first.hasSameWeather(null));
+    }
+
+    // Anything appended by a later version is skipped.
+    @Test
+    public void testIgnoresTrailingFields() {
+        byte[] data = new WeatherPayload(TIMESTAMP, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(500, 12, 4))).encode();
+        byte[] extended = Arrays.copyOf(data, data.length + 4);
+        assertEquals(500, WeatherPayload.decode(extended).getToday().getWeatherId());
+    }
+
+    @Test
+    public void testRejectsMalformedData() {
+        byte[] data = new WeatherPayload(TIMESTAMP, true, FIRST_DATE,
+                Arrays.asList(new WeatherPayload.Day(500, 12, 4))).encode();
+
+        byte[] futureVersion = data.clone();
+        futureVersion[0] = (byte) (WeatherPayload.VERSION + 1);
+
+        byte[][] malformed = {
+                new byte[0],
+                Arrays.copyOf(data, data.length - 1),
+                futureVersion,
+                // The CSV format this replaced.
+                "800,21\u00B0,9\u00B0".getBytes(Charset.forName("UTF-8"))
+        };
+        for (byte[] bytes : malformed) {
+            try {
+                WeatherPayload.decode(bytes);
+                fail("Decoded malformed payload " + Arrays.toString(bytes));
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -3,13 +3,15 @@ package com.example.android.sunshine.services;
 import android.content.Intent;
 import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
+import com.example.android.sunshine.utils.WeatherStore;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.MessageEvent;
 import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
-import java.nio.charset.Charset;
 
 /**
  * -------------------------------------------------------------------------------------------------
@@ -28,6 +30,7 @@ public class SunshineWearableListener extends WearableListenerService {
 
     // SYNC VARIABLES
     public static final String SUNSHINE_WEATHER_PATH = "/sunshine-weather";
+    public static final String SUNSHINE_WEATHER_REQUEST_PATH = "/sunshine-weather-request";
     public static final String SUNSHINE_WEATHER_INTENT = "sunshine_weather_intent";
     public static final String SUNSHINE_WEATHER_KEY = "sunshine_weather_key";
 
@@ -56,6 +59,16 @@ public class SunshineWearableListener extends WearableListenerService {
     @Override
     public void onDataChanged(DataEventBuffer dataEvents) {
         Log.d(LOG_TAG, "onDataChanged(): Data Event: " + dataEvents);
+
+        // The mobile app keeps the latest weather in a DataItem, which is delivered once when the
+        // watch reconnects.
+        for (DataEvent event : dataEvents) {
+            DataItem item = event.getDataItem();
+            if (event.getType() == DataEvent.TYPE_CHANGED
+                    && SUNSHINE_WEATHER_PATH.equals(item.getUri().getPath())) {
+                updateWeather(item.getData());
+            }
+        }
     }
 
     // onMessageReceived(): A message sent from one side of a connection triggers this callback on
@@ -69,14 +82,7 @@ public class SunshineWearableListener extends WearableListenerService {
 
         // If messageEvent matches the path value of SUNSHINE_WEATHER_PATH...
         if (messageEvent.getPath().startsWith(SUNSHINE_WEATHER_PATH)) {
-            byte[] data = messageEvent.getData();
-            String messageContent = new String(data, Charset.forName("UTF-8"));
-
-            Intent weatherIntent = new Intent(SUNSHINE_WEATHER_INTENT);
-            weatherIntent.putExtra(SUNSHINE_WEATHER_KEY, messageContent);
-            broadcastManager.sendBroadcast(weatherIntent);
-
-            Log.d(LOG_TAG, "onMessageReceived(): Sunshine weather update received: " + messageContent);
+            updateWeather(messageEvent.getData());
         }
     }
 
@@ -97,4 +103,21 @@ public class SunshineWearableListener extends WearableListenerService {
         Log.d(LOG_TAG, "onPeerDisconnected(): Peer: " + peer);
         super.onPeerDisconnected(peer);
     }
+
+    /** WEATHER METHODS ________________________________________________________________________ **/
+
+    // updateWeather(): The binary WeatherPayload is stored for the next time the watchface starts,
+    // and passed on as is to a running one. A payload the watch already has is ignored.
+    private void updateWeather(byte[] data) {
+        if (data == null || !WeatherStore.getInstance(this).save(data)) {
+            Log.d(LOG_TAG, "updateWeather(): Ignoring a weather update that isn't new.");
+            return;
+        }
+
+        Intent weatherIntent = new Intent(SUNSHINE_WEATHER_INTENT);
+        weatherIntent.putExtra(SUNSHINE_WEATHER_KEY, data);
+        broadcastManager.sendBroadcast(weatherIntent);
+
+        Log.d(LOG_TAG, "updateWeather(): Sunshine weather update received: " + data.length + " bytes.");
+    }
 }
\ No newline at end of file
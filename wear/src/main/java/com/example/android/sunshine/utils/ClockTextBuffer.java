@@ -0,0 +1,113 @@
+package com.example.android.sunshine.utils;
+
+import java.text.DateFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [ClockTextBuffer] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Holds the time ("hh:mm") and date ("Sun Oct 18, 2026") text of the watchface in
+ * reusable char arrays, so that they can be drawn with Canvas.drawText(char[], ...) without
+ * allocating on every frame. The time digits are written directly when the minute rolls over, and
+ * the date is formatted again only when the day rolls over.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class ClockTextBuffer {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // DATE FORMAT VARIABLES
+    private final DateFormat mDayOfWeekFormat;
+    private final DateFormat mDateFormat;
+    private final Date mDate = new Date();
+    private final StringBuffer mDateBuilder = new StringBuffer();
+    private final FieldPosition mFieldPosition = new FieldPosition(0);
+    private final Locale mLocale;
+    private final char mZeroDigit;
+
+    // TEXT VARIABLES
+    private final char[] mTimeChars = new char[5];
+    private char[] mDateChars = new char[32];
+    private int mDateLength;
+
+    // TIME VARIABLES
+    private int mHour = -1;
+    private int mMinute = -1;
+    private int mYear = -1;
+    private int mYearDay = -1;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    public ClockTextBuffer(Locale locale) {
+        mLocale = locale;
+        mDayOfWeekFormat = new SimpleDateFormat("E", locale);
+        mDateFormat = DateFormat.getDateInstance(DateFormat.DEFAULT, locale);
+        mZeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        mTimeChars[2] = ':';
+    }
+
+    /** UPDATE METHODS _________________________________________________________________________ **/
+
+    // update(): Updates the text to the specified local time. The time text is only written when
+    // the minute changes, and the date text only when the day changes; dayMillis is only read then.
+    // Returns true if the date text changed.
+    public boolean update(int year, int yearDay, int hour, int minute, long dayMillis) {
+        if (hour != mHour || minute != mMinute) {
+            mHour = hour;
+            mMinute = minute;
+
+            // The 12-hour clock shows 12 instead of 0, like the "hh" pattern.
+            int displayHour = hour % 12 == 0 ? 12 : hour % 12;
+            mTimeChars[0] = (char) (mZeroDigit + displayHour / 10);
+            mTimeChars[1] = (char) (mZeroDigit + displayHour % 10);
+            mTimeChars[3] = (char) (mZeroDigit + minute / 10);
+            mTimeChars[4] = (char) (mZeroDigit + minute % 10);
+        }
+
+        if (year == mYear && yearDay == mYearDay) {
+            return false;
+        }
+        mYear = year;
+        mYearDay = yearDay;
+
+        mDate.setTime(dayMillis);
+        mDateBuilder.setLength(0);
+        mDayOfWeekFormat.format(mDate, mDateBuilder, mFieldPosition);
+        mDateBuilder.append(' ');
+        mDateFormat.format(mDate, mDateBuilder, mFieldPosition);
+
+        mDateLength = mDateBuilder.length();
+        if (mDateLength > mDateChars.length) {
+            mDateChars = new char[mDateLength];
+        }
+        mDateBuilder.getChars(0, mDateLength, mDateChars, 0);
+        return true;
+    }
+
+    /** GET METHODS ____________________________________________________________________________ **/
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    public char[] getTimeChars() {
+        return mTimeChars;
+    }
+
+    public int getTimeLength() {
+        return mTimeChars.length;
+    }
+
+    public char[] getDateChars() {
+        return mDateChars;
+    }
+
+    public int getDateLength() {
+        return mDateLength;
+    }
+}
@@ -1,16 +1,11 @@
 package com.example.android.sunshine.utils;
 
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import com.example.android.sunshine.R;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.example.android.sunshine.common.WeatherConditionTable;
 
 /**
  * -------------------------------------------------------------------------------------------------
@@ -23,27 +18,37 @@ public class WatchDrawUtil {
 
     /** CLASS VARIABLES ________________________________________________________________________ **/
 
-    // DATE FORMAT VARIABLES
-    private static DateFormat DATE_FORMAT = DateFormat.getDateInstance();
-    private static DateFormat DAY_OF_WEEK_FORMAT = new SimpleDateFormat("E", Locale.getDefault());
-    private static SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("hh:mm");
+    // WEATHER VARIABLES
+    private static final int[] ART_RESOURCES = new int[WeatherConditionTable.CONDITION_COUNT];
+
+    static {
+        ART_RESOURCES[WeatherConditionTable.CONDITION_STORM] = R.drawable.art_storm;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_RAIN] = R.drawable.art_light_rain;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_RAIN] = R.drawable.art_rain;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_SNOW] = R.drawable.art_snow;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_FOG] = R.drawable.art_fog;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_TORNADO] = R.drawable.art_storm;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_CLEAR] = R.drawable.art_clear;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_LIGHT_CLOUDS] = R.drawable.art_light_clouds;
+        ART_RESOURCES[WeatherConditionTable.CONDITION_CLOUDS] = R.drawable.art_clouds;
+    }
 
     /** DRAW METHODS ___________________________________________________________________________ **/
 
-    // drawTime(): Draws the time text on the watchface canvas.
-    public static void drawTime(Canvas canvas, Rect bounds, Paint timeTextPaint) {
-        Date date = new Date();
+    // drawTime(): Draws the time text held by the ClockTextBuffer on the watchface canvas.
+    public static void drawTime(Canvas canvas, Rect bounds, ClockTextBuffer clockText,
+                                Paint timeTextPaint) {
         int width = bounds.width();
         int height = bounds.height();
         float x = width * 0.25f;
         float y = height * 0.3f;
 
-        canvas.drawText(TIME_FORMAT.format(date), x, y, timeTextPaint);
+        canvas.drawText(clockText.getTimeChars(), 0, clockText.getTimeLength(), x, y, timeTextPaint);
     }
 
-    // drawDate(): Draws the date text on the watchface canvas.
-    public static void drawDate(Canvas canvas, Rect bounds, Paint dateTimePaint, boolean isRound) {
-        Date date = new Date();
+    // drawDate(): Draws the date text held by the ClockTextBuffer on the watchface canvas.
+    public static void drawDate(Canvas canvas, Rect bounds, ClockTextBuffer clockText,
+                                Paint dateTimePaint, boolean isRound) {
         int width = bounds.width();
         int height = bounds.height();
         float x, y;
@@ -56,7 +61,7 @@ public class WatchDrawUtil {
             y = height * 0.45f;
         }
 
-        canvas.drawText(DAY_OF_WEEK_FORMAT.format(date) + " " + DATE_FORMAT.format(date), x, y, dateTimePaint);
+        canvas.drawText(clockText.getDateChars(), 0, clockText.getDateLength(), x, y, dateTimePaint);
     }
 
     // drawDivider(): Draws the divider line on the watchface canvas.
@@ -67,9 +72,10 @@ public class WatchDrawUtil {
         canvas.drawLine(startX, y, startX + width, y, dateTextPaint);
     }
 
-    // drawWeather(): Draws the weather resource on the watchfac canvas.
-    public static void drawWeather(Canvas canvas, Rect bounds, int weatherResource,
-                                   Paint backgroundPaint, boolean isAmbient, boolean isRound, Context context) {
+    // drawWeather(): Draws the weather bitmap on the watchface canvas. The bitmap comes already
+    // decoded and scaled from WeatherBitmapCache.
+    public static void drawWeather(Canvas canvas, Rect bounds, Bitmap weatherBitmap,
+                                   Paint backgroundPaint, boolean isAmbient, boolean isRound) {
         float x, y;
 
         if (isRound) {
@@ -81,9 +87,8 @@ public class WatchDrawUtil {
         }
 
         // Checks to see if the watch is currently in ambient mode or not.
-        if (!isAmbient) {
-            Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), weatherResource);
-            canvas.drawBitmap(bitmap, x, y, backgroundPaint);
+        if (!isAmbient && weatherBitmap != null) {
+            canvas.drawBitmap(weatherBitmap, x, y, backgroundPaint);
         }
     }
 
@@ -107,34 +112,10 @@ public class WatchDrawUtil {
     }
 
     // getWeatherConditionResource(): Returns a drawable resource ID based on the specified weather
-    // ID code. Derived from the getArtResourceForWeatherCondition() method in the Utility class.
-    // Weather ID codes are based on weather code data found at:
-    // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+    // ID code, or -1 if there's none. The codes are mapped by the WeatherConditionTable shared with
+    // the phone.
     public static int getWeatherConditionResource(int weatherId) {
-
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        }
-        return -1;
+        int condition = WeatherConditionTable.getCondition(weatherId);
+        return condition == WeatherConditionTable.CONDITION_UNKNOWN ? -1 : ART_RESOURCES[condition];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.example.android.sunshine.utils;
+
+import android.util.Log;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WatchFrameStats] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Counts the frames drawn by the watchface and how long they took, split between the
+ * frames that had to redraw the static layer and the frames that only drew the time over it. The
+ * averages are logged every LOG_INTERVAL_FRAMES frames. The watchface only keeps one in debug
+ * builds.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class WatchFrameStats {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = WatchFrameStats.class.getSimpleName();
+    private static final int LOG_INTERVAL_FRAMES = 60;
+
+    // FRAME VARIABLES
+    private long mLayerFrames;
+    private long mLayerFrameNanos;
+    private long mTimeOnlyFrames;
+    private long mTimeOnlyFrameNanos;
+
+    /** STATS METHODS __________________________________________________________________________ **/
+
+    // recordFrame(): Adds a frame that took the specified time to draw.
+    public void recordFrame(long frameNanos, boolean layerRedrawn) {
+        if (layerRedrawn) {
+            mLayerFrames++;
+            mLayerFrameNanos += frameNanos;
+        } else {
+            mTimeOnlyFrames++;
+            mTimeOnlyFrameNanos += frameNanos;
+        }
+
+        if ((mLayerFrames + mTimeOnlyFrames) % LOG_INTERVAL_FRAMES == 0) {
+            Log.d(LOG_TAG, "recordFrame(): " + mLayerFrames + " layer frames averaging "
+                    + getAverageLayerFrameMicros() + " us, " + mTimeOnlyFrames
+                    + " time-only frames averaging " + getAverageTimeOnlyFrameMicros() + " us.");
+        }
+    }
+
+    // reset(): Clears all of the counters.
+    public void reset() {
+        mLayerFrames = 0;
+        mLayerFrameNanos = 0;
+        mTimeOnlyFrames = 0;
+        mTimeOnlyFrameNanos = 0;
+    }
+
+    /** GET METHODS ____________________________________________________________________________ **/
+
+    public long getLayerFrames() {
+        return mLayerFrames;
+    }
+
+    public long getTimeOnlyFrames() {
+        return mTimeOnlyFrames;
+    }
+
+    // getAverageLayerFrameMicros(): Returns the average time of the frames that redrew the static
+    // layer, which is what every frame used to cost.
+    public long getAverageLayerFrameMicros() {
+        return mLayerFrames == 0 ? 0 : mLayerFrameNanos / mLayerFrames / 1000;
+    }
+
+    // getAverageTimeOnlyFrameMicros(): Returns the average time of the frames that only drew the
+    // cached layer and the time.
+    public long getAverageTimeOnlyFrameMicros() {
+        return mTimeOnlyFrames == 0 ? 0 : mTimeOnlyFrameNanos / mTimeOnlyFrames / 1000;
+    }
+}
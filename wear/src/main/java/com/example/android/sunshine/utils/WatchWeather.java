@@ -0,0 +1,69 @@
+package com.example.android.sunshine.utils;
+
+import com.example.android.sunshine.common.TemperatureFormatter;
+import com.example.android.sunshine.common.WeatherPayload;
+import java.util.List;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WatchWeather] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: One day's weather as the watchface shows it, taken from the binary WeatherPayload
+ * sent by the mobile app. The temperatures are formatted on the watch, in the units the phone
+ * asked for and with the watch's own digits.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class WatchWeather {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // WEATHER VARIABLES
+    private final WeatherPayload mPayload;
+    private final int mWeatherResourceId;
+    private final String mMaxTemp;
+    private final String mMinTemp;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    // WatchWeather(): Formats the weather of the specified day of the payload with the specified
+    // digits. Days before the first one show the first, and days after the last show the last.
+    public WatchWeather(WeatherPayload payload, int dayIndex, char zeroDigit) {
+        mPayload = payload;
+
+        List<WeatherPayload.Day> days = payload.getDays();
+        WeatherPayload.Day day = days.get(Math.max(0, Math.min(dayIndex, days.size() - 1)));
+        TemperatureFormatter formatter = new TemperatureFormatter(payload.isMetric(), zeroDigit,
+                TemperatureFormatter.DEGREE_SUFFIX);
+        mWeatherResourceId = WatchDrawUtil.getWeatherConditionResource(day.getWeatherId());
+        mMaxTemp = formatter.format(day.getHigh());
+        mMinTemp = formatter.format(day.getLow());
+    }
+
+    // decodePayload(): Decodes the payload sent by the mobile app. Returns null if it can't be read.
+    public static WeatherPayload decodePayload(byte[] data) {
+        try {
+            return WeatherPayload.decode(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** GET METHODS ____________________________________________________________________________ **/
+
+    public WeatherPayload getPayload() {
+        return mPayload;
+    }
+
+    // getWeatherResourceId(): Returns the art drawable of the day's weather, or -1 if there's none.
+    public int getWeatherResourceId() {
+        return mWeatherResourceId;
+    }
+
+    public String getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public String getMinTemp() {
+        return mMinTemp;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.android.sunshine.utils;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WeatherBitmapCache] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Holds the weather art bitmap drawn by the watchface, decoded and scaled to its
+ * target size once. The bitmap is only decoded again when the weather resource or the target size
+ * changes, so onDraw() never touches BitmapFactory.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class WeatherBitmapCache {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = WeatherBitmapCache.class.getSimpleName();
+
+    // RESOURCE VARIABLES
+    private final Resources mResources;
+
+    // BITMAP VARIABLES
+    private Bitmap mBitmap;
+    private int mResourceId = -1;
+    private int mSize;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    public WeatherBitmapCache(Resources resources) {
+        mResources = resources;
+    }
+
+    /** CACHE METHODS __________________________________________________________________________ **/
+
+    // getBitmap(): Returns the bitmap of the specified weather resource, scaled to a square of the
+    // specified size. Returns null if the resource ID is invalid.
+    public Bitmap getBitmap(int resourceId, int size) {
+        if (resourceId <= 0 || size <= 0) {
+            return null;
+        }
+
+        if (mBitmap != null && resourceId == mResourceId && size == mSize) {
+            return mBitmap;
+        }
+
+        clear();
+        mBitmap = decodeScaledBitmap(resourceId, size);
+        if (mBitmap != null) {
+            mResourceId = resourceId;
+            mSize = size;
+        }
+        return mBitmap;
+    }
+
+    // clear(): Releases the cached bitmap.
+    public void clear() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mResourceId = -1;
+        mSize = 0;
+    }
+
+    /** DECODE METHODS _________________________________________________________________________ **/
+
+    // decodeScaledBitmap(): Decodes the resource at the smallest power of two sample size that is
+    // still at least the target size, then scales it down the rest of the way.
+    private Bitmap decodeScaledBitmap(int resourceId, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, resourceId, options);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size
+                && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(mResources, resourceId, options);
+        if (decoded == null) {
+            Log.e(LOG_TAG, "decodeScaledBitmap(): Unable to decode weather resource " + resourceId);
+            return null;
+        }
+
+        if (decoded.getWidth() == size && decoded.getHeight() == size) {
+            return decoded;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, size, size, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.sunshine.utils;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+import com.example.android.sunshine.common.WeatherPayload;
+import com.example.android.sunshine.services.SunshineWearableListener;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [WeatherStore] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Keeps the last weather payload received from the mobile app in a file, so that the
+ * watchface can show it as soon as it starts instead of placeholders until the next sync. When
+ * the stored payload is missing or stale, the watch asks the mobile app for the weather again.
+ * The methods block, and must not be called on the main thread.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class WeatherStore {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    // INSTANCE VARIABLES
+    private static WeatherStore sInstance;
+
+    // LOGGING VARIABLES
+    private static final String LOG_TAG = WeatherStore.class.getSimpleName();
+
+    // FILE VARIABLES
+    private static final String FILE_NAME = "weather_payload.bin";
+    private final AtomicFile mFile;
+
+    // REQUEST VARIABLES
+    private static final long STALE_AFTER_MILLIS = TimeUnit.HOURS.toMillis(3); // The mobile app syncs every three hours.
+    private static final long REQUEST_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10); // Limits how often the mobile app is asked.
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+    private static final long REQUEST_TIMEOUT_SECONDS = 15;
+    private final Context mContext;
+    private long mLastRequestMillis;
+
+    /** CONSTRUCTOR METHODS ____________________________________________________________________ **/
+
+    private WeatherStore(Context context) {
+        mContext = context;
+        mFile = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    // getInstance(): Returns the WeatherStore shared by the watchface and the listener service.
+    public static synchronized WeatherStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /** STORE METHODS __________________________________________________________________________ **/
+
+    // save(): Stores the encoded payload, unless it can't be read or is not newer than the stored
+    // one. The same payload can arrive both as a message and as a DataItem, so returns whether it
+    // was new.
+    public synchronized boolean save(byte[] data) {
+        WeatherPayload payload = WatchWeather.decodePayload(data);
+        if (payload == null) {
+            return false;
+        }
+
+        WeatherPayload stored = load();
+        if (stored != null && stored.getTimestamp() >= payload.getTimestamp()) {
+            return false;
+        }
+
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            stream.write(data);
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "save(): ERROR: Unable to store the weather: " + e.getMessage());
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+        return true;
+    }
+
+    // load(): Returns the stored payload, or null if there's none or it can't be read.
+    public synchronized WeatherPayload load() {
+        try {
+            return WatchWeather.decodePayload(mFile.readFully());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "load(): ERROR: Unable to read the stored weather: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // isStale(): Returns whether the payload is missing or old enough that the mobile app should
+    // have synced since. A payload from the future means one of the clocks was wrong, and counts
+    // as stale too.
+    public static boolean isStale(WeatherPayload payload, long nowMillis) {
+        return payload == null || Math.abs(nowMillis - payload.getTimestamp()) > STALE_AFTER_MILLIS;
+    }
+
+    /** REQUEST METHODS ________________________________________________________________________ **/
+
+    // requestUpdate(): Asks every connected node for the weather. The answer arrives through
+    // SunshineWearableListener like any other update. Does nothing if the mobile app was asked
+    // recently.
+    public void requestUpdate() {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (mLastRequestMillis != 0 && now - mLastRequestMillis < REQUEST_INTERVAL_MILLIS) {
+                return;
+            }
+            mLastRequestMillis = now;
+        }
+
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(mContext)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult result = googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.e(LOG_TAG, "requestUpdate(): ERROR: Google API client connection failed: " + result.getErrorMessage());
+            return;
+        }
+
+        try {
+            NodeApi.GetConnectedNodesResult nodes = Wearable.NodeApi.getConnectedNodes(googleApiClient)
+                    .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (Node node : nodes.getNodes()) {
+                Log.d(LOG_TAG, "requestUpdate(): Requesting the weather from node " + node.getId());
+                Wearable.MessageApi.sendMessage(googleApiClient, node.getId(),
+                        SunshineWearableListener.SUNSHINE_WEATHER_REQUEST_PATH, new byte[0])
+                        .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+}
@@ -21,11 +21,13 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -36,10 +38,19 @@ import android.text.format.Time;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
+import com.example.android.sunshine.BuildConfig;
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.common.WeatherPayload;
 import com.example.android.sunshine.services.SunshineWearableListener;
+import com.example.android.sunshine.utils.ClockTextBuffer;
 import com.example.android.sunshine.utils.WatchDrawUtil;
+import com.example.android.sunshine.utils.WatchFrameStats;
+import com.example.android.sunshine.utils.WatchWeather;
+import com.example.android.sunshine.utils.WeatherBitmapCache;
+import com.example.android.sunshine.utils.WeatherStore;
 import java.lang.ref.WeakReference;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -116,6 +127,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         boolean mAmbient;
         boolean mRegisteredTimeZoneReceiver = false;
         Time mTime;
+        ClockTextBuffer mClockText;
 
         // PAINT VARIABLES:
         Paint mBackgroundPaint;
@@ -125,6 +137,23 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         Paint mClockTextPaint;
         Paint mTimeTextPaint;
 
+        // WEATHER VARIABLES:
+        WeatherPayload mWeatherPayload;
+        WeatherLoadTask mWeatherLoadTask;
+
+        // WEATHER BITMAP VARIABLES:
+        WeatherBitmapCache mWeatherBitmapCache;
+        Bitmap mWeatherBitmap;
+        int mWeatherArtSize;
+
+        // LAYER VARIABLES: Everything but the time is drawn to mStaticLayer, and only drawn again
+        // when mStaticLayerDirty is set. mClockText sets it when the day changes.
+        Bitmap mStaticLayer;
+        Canvas mStaticCanvas;
+        boolean mStaticLayerDirty = true;
+        // Frames are only timed in debug builds.
+        final WatchFrameStats mFrameStats = BuildConfig.DEBUG ? new WatchFrameStats() : null;
+
         // HANDLER VARIABLES:
         final Handler mUpdateTimeHandler = new EngineHandler(this);
 
@@ -133,6 +162,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             public void onReceive(Context context, Intent intent) {
                 mTime.clear(intent.getStringExtra("time-zone"));
                 mTime.setToNow();
+
+                // The date formats hold on to the time zone they were created in.
+                mClockText = new ClockTextBuffer(Locale.getDefault());
+                mStaticLayerDirty = true;
             }
         };
 
@@ -140,29 +173,18 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             @Override
             public void onReceive(Context context, Intent intent) {
 
-                String sunshineData = intent.getStringExtra(SunshineWearableListener.SUNSHINE_WEATHER_KEY);
-
-                Log.d(LOG_TAG, "mSunshineReceiver: Received Sunshine data: " + sunshineData);
-
-                // If the received data is null or empty, the method ends.
-                if (sunshineData == null || sunshineData.length() == 0) {
-                    return;
-                }
+                byte[] sunshineData = intent.getByteArrayExtra(SunshineWearableListener.SUNSHINE_WEATHER_KEY);
 
-                String[] values = sunshineData.split(",");
-                if (values.length < 3) {
+                // Decodes the binary weather payload passed from the mobile app. If it can't be
+                // read, the method ends.
+                WeatherPayload payload = WatchWeather.decodePayload(sunshineData);
+                if (payload == null) {
+                    Log.e(LOG_TAG, "mSunshineReceiver: Unable to read Sunshine data.");
                     return;
                 }
 
-                // Retrieves the weather ID code from the data passed from the mobile app.
-                int weatherId = Integer.valueOf(values[0]);
-                mWeatherResourceId = WatchDrawUtil.getWeatherConditionResource(weatherId);
-
-                // Retrieves the max and min weather temperature vvalues.
-                mTempMax = values[1];
-                mTempMin = values[2];
-
-                invalidate();
+                Log.d(LOG_TAG, "mSunshineReceiver: Received Sunshine data: " + payload);
+                setWeather(payload);
             }
         };
 
@@ -190,14 +212,26 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             Resources resources = SunshineWatchFace.this.getResources();
             mBroadcastManager = LocalBroadcastManager.getInstance(getApplicationContext());
             mTime = new Time();
+            mClockText = new ClockTextBuffer(Locale.getDefault());
             mYOffset = resources.getDimension(R.dimen.digital_y_offset);
+            mWeatherBitmapCache = new WeatherBitmapCache(resources);
 
             initPaint(resources); // Initializes all the Paint objects in this class.
+
+            // Shows the last weather received from the mobile app as soon as it's loaded.
+            loadWeather();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (mWeatherLoadTask != null) {
+                mWeatherLoadTask.cancel(false);
+                mWeatherLoadTask = null;
+            }
+            mWeatherBitmapCache.clear();
+            mWeatherBitmap = null;
+            releaseStaticLayer();
             super.onDestroy();
         }
 
@@ -219,6 +253,13 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 // Update time zone in case it changed while we weren't visible.
                 mTime.clear(TimeZone.getDefault().getID());
                 mTime.setToNow();
+
+                // Builds the clock text again in case the locale or time zone changed.
+                mClockText = new ClockTextBuffer(Locale.getDefault());
+                mStaticLayerDirty = true;
+
+                // Picks up any weather the listener service stored while the face was hidden.
+                loadWeather();
             } else {
                 unregisterReceiver();
             }
@@ -254,6 +295,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             mMinTempTextPaint.setTextSize(tempTextSize);
             mTimeTextPaint.setTextSize(timeTextSize);
             mClockTextPaint.setTextSize(clockTextSize);
+
+            // Scales the weather art to the new size once, instead of decoding it on every frame.
+            mWeatherArtSize = resources.getDimensionPixelSize(mIsRound
+                    ? R.dimen.weather_art_size_round : R.dimen.weather_art_size);
+            updateWeatherBitmap();
+            mStaticLayerDirty = true;
         }
 
         @Override
@@ -278,6 +325,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     mClockTextPaint.setAntiAlias(!inAmbientMode);
                     mTimeTextPaint.setAntiAlias(!inAmbientMode);
                 }
+                mStaticLayerDirty = true;
                 invalidate();
             }
 
@@ -306,26 +354,77 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     mTapCount++;
                     mBackgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
                             R.color.watchface_background : R.color.watchface_tap_background));
+                    mStaticLayerDirty = true;
                     break;
             }
             invalidate();
         }
 
+        // onDraw(): Draws the cached static layer and the time over it. The static layer is only
+        // drawn again when one of its inputs has changed.
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            long startNanos = mFrameStats != null ? System.nanoTime() : 0;
+
+            mTime.setToNow();
+            if (mClockText.update(mTime.year, mTime.yearDay, mTime.hour, mTime.minute,
+                    mTime.toMillis(false))) {
+                // A new day shows the next day of the forecast.
+                showWeatherForToday();
+                mStaticLayerDirty = true;
+            }
+            boolean layerRedrawn = updateStaticLayer(bounds);
+            canvas.drawBitmap(mStaticLayer, 0, 0, null);
+            WatchDrawUtil.drawTime(canvas, bounds, mClockText, mTimeTextPaint);
+
+            if (mFrameStats != null) {
+                mFrameStats.recordFrame(System.nanoTime() - startNanos, layerRedrawn);
+            }
+        }
+
+        // updateStaticLayer(): Draws the background, date, divider, temperatures and weather art
+        // to the offscreen layer if they have changed since it was last drawn, or if the day has
+        // rolled over. Returns whether the layer was drawn.
+        private boolean updateStaticLayer(Rect bounds) {
+            int width = bounds.width();
+            int height = bounds.height();
+            if (mStaticLayer == null || mStaticLayer.getWidth() != width
+                    || mStaticLayer.getHeight() != height) {
+                releaseStaticLayer();
+                mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mStaticCanvas = new Canvas(mStaticLayer);
+                mStaticLayerDirty = true;
+            }
+
+            if (!mStaticLayerDirty) {
+                return false;
+            }
+
+            Canvas canvas = mStaticCanvas;
 
             // Draws the background.
             if (isInAmbientMode()) {
                 canvas.drawColor(Color.BLACK);
             } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+                canvas.drawRect(0, 0, width, height, mBackgroundPaint);
             }
 
-            WatchDrawUtil.drawTime(canvas, bounds, mTimeTextPaint);
-            WatchDrawUtil.drawDate(canvas, bounds, mDateTextPaint, mIsRound);
+            WatchDrawUtil.drawDate(canvas, bounds, mClockText, mDateTextPaint, mIsRound);
             WatchDrawUtil.drawDivider(canvas, bounds, mDateTextPaint);
             WatchDrawUtil.drawMinMaxTemp(canvas, bounds, mTempMax, mTempMin, mMaxTempTextPaint, mMinTempTextPaint, mIsRound);
-            WatchDrawUtil.drawWeather(canvas, bounds, mWeatherResourceId, mBackgroundPaint, isInAmbientMode(), mIsRound, getBaseContext());
+            WatchDrawUtil.drawWeather(canvas, bounds, mWeatherBitmap, mBackgroundPaint, isInAmbientMode(), mIsRound);
+
+            mStaticLayerDirty = false;
+            return true;
+        }
+
+        // releaseStaticLayer(): Releases the offscreen layer bitmap.
+        private void releaseStaticLayer() {
+            if (mStaticLayer != null) {
+                mStaticLayer.recycle();
+                mStaticLayer = null;
+                mStaticCanvas = null;
+            }
         }
 
         // updateTimer(): Starts the {@link #mUpdateTimeHandler} timer if it should be running and
@@ -354,6 +453,92 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             }
         }
 
+        // updateWeatherBitmap(): Fetches the weather bitmap for the current weather and art size
+        // from the cache, which only decodes it again if either of them changed.
+        private void updateWeatherBitmap() {
+            mWeatherBitmap = mWeatherBitmapCache.getBitmap(mWeatherResourceId, mWeatherArtSize);
+        }
+
+        /** WEATHER METHODS ____________________________________________________________________ **/
+
+        // loadWeather(): Loads the stored weather in the background, and asks the mobile app for
+        // the weather if it's missing or stale.
+        private void loadWeather() {
+            if (mWeatherLoadTask == null) {
+                mWeatherLoadTask = new WeatherLoadTask();
+                mWeatherLoadTask.execute();
+            }
+        }
+
+        // setWeather(): Shows the weather of the payload, unless the weather shown is newer.
+        private void setWeather(WeatherPayload payload) {
+            if (mWeatherPayload != null && mWeatherPayload.getTimestamp() > payload.getTimestamp()) {
+                return;
+            }
+            mWeatherPayload = payload;
+
+            mTime.setToNow();
+            showWeatherForToday();
+            mStaticLayerDirty = true;
+            invalidate();
+        }
+
+        // showWeatherForToday(): Picks the day of the payload that mTime is on, since a stored
+        // payload may have been sent on an earlier day.
+        private void showWeatherForToday() {
+            if (mWeatherPayload == null) {
+                return;
+            }
+
+            int dayIndex = Time.getJulianDay(mTime.toMillis(false), mTime.gmtoff)
+                    - Time.getJulianDay(mWeatherPayload.getFirstDate(), mTime.gmtoff);
+            WatchWeather weather = new WatchWeather(mWeatherPayload, dayIndex,
+                    DecimalFormatSymbols.getInstance().getZeroDigit());
+
+            mWeatherResourceId = weather.getWeatherResourceId();
+            mTempMax = weather.getMaxTemp();
+            mTempMin = weather.getMinTemp();
+            updateWeatherBitmap();
+        }
+
+        /**
+         * -----------------------------------------------------------------------------------------
+         * [WeatherLoadTask] CLASS
+         * DESCRIPTION: This is an AsyncTask-based class that reads the stored weather and, if it's
+         * stale, requests the weather from the mobile app in the background. The stored weather is
+         * shown as soon as it's read, without waiting for the request.
+         * -----------------------------------------------------------------------------------------
+         */
+        private class WeatherLoadTask extends AsyncTask<Void, WeatherPayload, Void> {
+
+            @Override
+            protected Void doInBackground(Void... args) {
+                WeatherStore store = WeatherStore.getInstance(getApplicationContext());
+                WeatherPayload payload = store.load();
+                if (payload != null) {
+                    publishProgress(payload);
+                }
+                if (WeatherStore.isStale(payload, System.currentTimeMillis())) {
+                    store.requestUpdate();
+                }
+                return null;
+            }
+
+            @Override
+            protected void onProgressUpdate(WeatherPayload... payloads) {
+                if (isCancelled()) {
+                    return;
+                }
+                Log.d(LOG_TAG, "onProgressUpdate(): Loaded stored Sunshine data: " + payloads[0]);
+                setWeather(payloads[0]);
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                mWeatherLoadTask = null;
+            }
+        }
+
         /** RECEIVER METHODS ___________________________________________________________________ **/
 
         // registerReceiver(): Registers the broadcast receivers.
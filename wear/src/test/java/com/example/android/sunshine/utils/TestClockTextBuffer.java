@@ -0,0 +1,115 @@
+package com.example.android.sunshine.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [TestClockTextBuffer] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Checks that ClockTextBuffer produces the same text as the SimpleDateFormats the
+ * watchface used before, and that it stops allocating once warm.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class TestClockTextBuffer {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    private static final int FRAMES = 10000;
+
+    /** TEST METHODS ___________________________________________________________________________ **/
+
+    // testMatchesDateFormats(): Every minute of a day and the first days of a year come out the way
+    // the "hh:mm", "E" and default date formats had them.
+    @Test
+    public void testMatchesDateFormats() {
+        Locale[] locales = {Locale.US, Locale.FRANCE, new Locale("ar", "EG")};
+        for (Locale locale : locales) {
+            ClockTextBuffer clockText = new ClockTextBuffer(locale);
+            SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm", locale);
+            DateFormat dayOfWeekFormat = new SimpleDateFormat("E", locale);
+            DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.DEFAULT, locale);
+
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(2016, Calendar.JANUARY, 1, 0, 0, 0);
+            for (int minute = 0; minute < 60 * 24 * 3; minute++) {
+                update(clockText, calendar);
+                Date date = calendar.getTime();
+                assertEquals(timeFormat.format(date), new String(clockText.getTimeChars(), 0,
+                        clockText.getTimeLength()));
+                assertEquals(dayOfWeekFormat.format(date) + " " + dateFormat.format(date),
+                        new String(clockText.getDateChars(), 0, clockText.getDateLength()));
+                calendar.add(Calendar.MINUTE, 1);
+            }
+        }
+    }
+
+    // testDateChangesOnlyOnRollover(): The date is only formatted again when the day changes.
+    @Test
+    public void testDateChangesOnlyOnRollover() {
+        ClockTextBuffer clockText = new ClockTextBuffer(Locale.US);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2016, Calendar.JUNE, 8, 23, 58, 0);
+        assertTrue(update(clockText, calendar));
+        calendar.add(Calendar.MINUTE, 1);
+        assertFalse(update(clockText, calendar));
+        calendar.add(Calendar.MINUTE, 1);
+        assertTrue(update(clockText, calendar));
+    }
+
+    // testNoAllocationsPerFrame(): Once warm, a frame and a minute rollover allocate nothing.
+    @Test
+    public void testNoAllocationsPerFrame() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        ClockTextBuffer clockText = new ClockTextBuffer(Locale.US);
+        long dayMillis = System.currentTimeMillis();
+        long sink = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            sink += drawFrame(clockText, frame, dayMillis);
+        }
+
+        // Called twice so that the first call's own allocations aren't counted.
+        allocationBean.getThreadAllocatedBytes(threadId);
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            sink += drawFrame(clockText, frame, dayMillis);
+        }
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sink > 0);
+        assertEquals("Bytes allocated over " + FRAMES + " frames", 0, allocated);
+    }
+
+    /** HELPER METHODS _________________________________________________________________________ **/
+
+    // drawFrame(): Updates the clock as a frame would, a new minute every 60 frames of the same day.
+    private static long drawFrame(ClockTextBuffer clockText, int frame, long dayMillis) {
+        int minute = (frame / 60) % (60 * 24);
+        clockText.update(2016, 160, minute / 60, minute % 60, dayMillis);
+        return clockText.getTimeChars()[4] + clockText.getDateLength();
+    }
+
+    private static boolean update(ClockTextBuffer clockText, Calendar calendar) {
+        return clockText.update(calendar.get(Calendar.YEAR), calendar.get(Calendar.DAY_OF_YEAR),
+                calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE),
+                calendar.getTimeInMillis());
+    }
+}
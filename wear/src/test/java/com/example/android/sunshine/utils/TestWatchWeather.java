@@ -0,0 +1,91 @@
+package com.example.android.sunshine.utils;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.common.WeatherPayload;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * [TestWatchWeather] CLASS
+ * DEVELOPER: Michael Yoon Huh (HUHX0015)
+ * DESCRIPTION: Checks that the watch reads the binary payloads encoded by the mobile app and
+ * formats their temperatures locally.
+ * -------------------------------------------------------------------------------------------------
+ */
+public class TestWatchWeather {
+
+    /** CLASS VARIABLES ________________________________________________________________________ **/
+
+    private static final long TIMESTAMP = 1465430400123L;
+    private static final long FIRST_DATE = 1465430400000L;
+
+    /** TEST METHODS ___________________________________________________________________________ **/
+
+    // testMetricRoundTrip(): Today's weather is shown in Celsius when the phone asks for metric.
+    @Test
+    public void testMetricRoundTrip() {
+        byte[] data = new WeatherPayload(TIMESTAMP, true, FIRST_DATE, Arrays.asList(
+                new WeatherPayload.Day(800, 21.37, 9.5),
+                new WeatherPayload.Day(502, 12, 4))).encode();
+
+        WatchWeather weather = new WatchWeather(WatchWeather.decodePayload(data), 0, '0');
+        assertEquals(R.drawable.art_clear, weather.getWeatherResourceId());
+        assertEquals("21\u00B0", weather.getMaxTemp());
+        assertEquals("10\u00B0", weather.getMinTemp());
+        assertEquals(TIMESTAMP, weather.getPayload().getTimestamp());
+        assertEquals(2, weather.getPayload().getDays().size());
+    }
+
+    // testImperialRoundTrip(): The watch converts to Fahrenheit itself.
+    @Test
+    public void testImperialRoundTrip() {
+        byte[] data = new WeatherPayload(TIMESTAMP, false, FIRST_DATE, Arrays.asList(
+                new WeatherPayload.Day(502, 21.37, -5))).encode();
+
+        WatchWeather weather = new WatchWeather(WatchWeather.decodePayload(data), 0, '0');
+        assertEquals(R.drawable.art_rain, weather.getWeatherResourceId());
+        assertEquals("70\u00B0", weather.getMaxTemp());
+        assertEquals("23\u00B0", weather.getMinTemp());
+    }
+
+    // testDayIndex(): A cached payload shows the day the watch is on, as long as it still has it.
+    @Test
+    public void testDayIndex() {
+        WeatherPayload payload = new WeatherPayload(TIMESTAMP, true, FIRST_DATE, Arrays.asList(
+                new WeatherPayload.Day(800, 21, 9),
+                new WeatherPayload.Day(502, 12, 4)));
+
+        assertEquals("21\u00B0", new WatchWeather(payload, -1, '0').getMaxTemp());
+        assertEquals("12\u00B0", new WatchWeather(payload, 1, '0').getMaxTemp());
+        assertEquals(R.drawable.art_rain, new WatchWeather(payload, 1, '0').getWeatherResourceId());
+        assertEquals("12\u00B0", new WatchWeather(payload, 5, '0').getMaxTemp());
+    }
+
+    // testPayloadSize(): A payload of the whole forecast is still a single small message.
+    @Test
+    public void testPayloadSize() {
+        List<WeatherPayload.Day> days = new ArrayList<>();
+        for (int i = 0; i < WeatherPayload.MAX_DAYS; i++) {
+            days.add(new WeatherPayload.Day(800, 20 + i, 10 - i));
+        }
+        byte[] data = new WeatherPayload(TIMESTAMP, true, FIRST_DATE, days).encode();
+        assertEquals(103, data.length);
+        assertEquals(WeatherPayload.MAX_DAYS, WatchWeather.decodePayload(data).getDays().size());
+    }
+
+    // testUnreadablePayloads(): Data the watch can't read is dropped instead of crashing the face.
+    @Test
+    public void testUnreadablePayloads() {
+        assertNull(WatchWeather.decodePayload(null));
+        assertNull(WatchWeather.decodePayload(new byte[0]));
+        assertNull(WatchWeather.decodePayload("800,21\u00B0,9\u00B0".getBytes(Charset.forName("UTF-8"))));
+    }
+}